@@ -0,0 +1,91 @@
+package ktxo.art.processing.benchmarks;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+import ktxo.art.processing.Grid;
+import ktxo.art.processing.GridConstants;
+import processing.core.PApplet;
+
+/**
+ * Check that {@link Grid#render()} does not allocate memory (after the first
+ * frames, once render caches are built), with and without vibration, and
+ * that simulation steps do not allocate (frames are recycled). Exit status is
+ * 1 if any allocation is found.
+ * 
+ * Uses com.sun.management.ThreadMXBean (HotSpot JVMs).
+ * 
+ * @author ktxo.art@gmail.com
+ *
+ */
+public class AllocationCheck {
+	private static final int WARMUP = 1000;
+	private static final int FRAMES = 100;
+
+	public static void main(String[] args) {
+		com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory
+				.getThreadMXBean();
+		long thread = Thread.currentThread().getId();
+		int[] modes = { GridConstants.RENDER_IMMEDIATE, GridConstants.RENDER_BATCHED };
+		boolean failed = false;
+
+		for (int mode : modes) {
+			for (boolean vibration : new boolean[] { false, true }) {
+				PApplet parent = CountingGraphics.sketch(1000, 1000);
+				Grid grid = GridBenchmark.grid(parent, 200);
+				grid.setRenderMode(mode);
+				grid.vibrate(vibration, 0.05F, GridConstants.VIBRATE_ALL);
+				for (int i = 0; i < WARMUP; i++) {
+					grid.render();
+				}
+				long start = bean.getThreadAllocatedBytes(thread);
+				for (int i = 0; i < FRAMES; i++) {
+					grid.render();
+				}
+				long bytes = (bean.getThreadAllocatedBytes(thread) - start) / FRAMES;
+				System.out.println(String.format("mode=%d vibration=%b bytes/render=%d", mode, vibration, bytes));
+				failed |= bytes > 0;
+			}
+		}
+		failed |= checkSimulation(bean);
+		if (failed) {
+			System.out.println("FAILED: render() or simulation steps allocate memory");
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Measure memory allocated by simulation steps and by render() while the
+	 * simulation is running
+	 * 
+	 * @return true if any allocation is found
+	 */
+	private static boolean checkSimulation(com.sun.management.ThreadMXBean bean) {
+		PApplet parent = CountingGraphics.sketch(1000, 1000);
+		Grid grid = GridBenchmark.grid(parent, 200);
+		grid.setNoiseSeed(1);
+		grid.vibrate(true, 0.05F, GridConstants.VIBRATE_ALL);
+		AtomicLong steps = new AtomicLong();
+		AtomicLong simulation = new AtomicLong();
+		grid.startSimulation(g -> {
+			simulation.set(Thread.currentThread().getId());
+			steps.incrementAndGet();
+		}, 1000);
+		long thread = Thread.currentThread().getId();
+		for (int i = 0; i < WARMUP; i++) {
+			grid.render();
+		}
+		long step0 = steps.get();
+		long sim0 = bean.getThreadAllocatedBytes(simulation.get());
+		long start = bean.getThreadAllocatedBytes(thread);
+		for (int i = 0; i < FRAMES; i++) {
+			grid.render();
+		}
+		long render = (bean.getThreadAllocatedBytes(thread) - start) / FRAMES;
+		long nsteps = steps.get() - step0;
+		long step = (bean.getThreadAllocatedBytes(simulation.get()) - sim0) / Math.max(1, nsteps);
+		grid.stopSimulation();
+		System.out.println(String.format("simulation bytes/render=%d bytes/step=%d (%d steps)", render, step, nsteps));
+		return render > 0 || step > 0;
+	}
+}
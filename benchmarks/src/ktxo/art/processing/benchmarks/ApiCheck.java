@@ -0,0 +1,275 @@
+package ktxo.art.processing.benchmarks;
+
+import ktxo.art.processing.Grid;
+import ktxo.art.processing.GridConstants;
+import processing.core.PApplet;
+import processing.core.PVector;
+
+/**
+ * Consistency checks of {@link Grid} API (derived state after batch edits,
+ * ...). Exit status is 1 if any check fails.
+ * 
+ * @author ktxo.art@gmail.com
+ *
+ */
+public class ApiCheck {
+	private static boolean failed = false;
+
+	public static void main(String[] args) {
+		PApplet parent = CountingGraphics.sketch(1000, 1000);
+		checkEditBounds(parent);
+		checkEditException(parent);
+		checkSimulation(parent);
+		checkReadback(parent);
+		checkVibration(parent);
+		checkCullingColumn(parent);
+		checkLevelOfDetailHidden();
+		checkRetainedFallback(parent);
+		if (failed) {
+			System.out.println("FAILED");
+			System.exit(1);
+		}
+	}
+
+	private static void check(boolean ok, String message) {
+		System.out.println((ok ? "ok      " : "FAILED  ") + message);
+		failed |= !ok;
+	}
+
+	/**
+	 * Bounds queried inside a batch must not hide later moves after commit()
+	 */
+	private static void checkEditBounds(PApplet parent) {
+		Grid grid = GridBenchmark.grid(parent, 20);
+		grid.beginEdit();
+		grid.movePointTo(0, 0, -100, -100);
+		float[] inside = grid.getBounds();
+		grid.getMaxX();
+		grid.getMaxY();
+		grid.movePointTo(19, 19, 5000, 4000);
+		grid.commit();
+		float[] b = grid.getBounds();
+		check(inside[0] == -100 && inside[1] == -100, "bounds inside batch");
+		check(b[0] == -100 && b[1] == -100 && b[2] == 5000 && b[3] == 4000, "bounds after commit");
+		check(grid.getMaxX() == 5000 && grid.getMaxY() == 4000, "row/column bounds after commit");
+	}
+
+	/**
+	 * A failed moveRowTo must end its batch: later moves update bounds again
+	 */
+	private static void checkEditException(PApplet parent) {
+		Grid grid = GridBenchmark.grid(parent, 20);
+		PVector[] targets = new PVector[20];
+		for (int i = 0; i < targets.length; i++) {
+			targets[i] = new PVector(i, 0);
+		}
+		try {
+			// Row out of range
+			grid.moveRowTo(20, targets, 1);
+		} catch (RuntimeException e) {
+		}
+		grid.movePointTo(0, 0, -100, -100);
+		grid.getBounds();
+		grid.movePointTo(19, 19, 5000, 4000);
+		float[] b = grid.getBounds();
+		check(b[0] == -100 && b[2] == 5000 && b[3] == 4000, "bounds after failed moveRowTo");
+	}
+
+	/**
+	 * Simulation must refuse an invalid rate and sketch thread only noise
+	 */
+	private static void checkSimulation(PApplet parent) {
+		Grid grid = GridBenchmark.grid(parent, 20);
+		check(refused(grid, 60, IllegalStateException.class), "simulation with sketch noise refused");
+		grid.setNoiseSeed(1);
+		check(refused(grid, 0, IllegalArgumentException.class), "simulation with rate 0 refused");
+		check(refused(grid, Float.NaN, IllegalArgumentException.class), "simulation with rate NaN refused");
+		grid.vibrate(true, 1, GridConstants.VIBRATE_ALL);
+		grid.enableStats(true);
+		check(!refused(grid, 60, RuntimeException.class), "simulation with seeded noise started");
+		boolean running = grid.isSimulating();
+		try {
+			Thread.sleep(100);
+		} catch (InterruptedException e) {
+		}
+		grid.render();
+		long vibrated = grid.getStats().getPointsVibrated();
+		grid.stopSimulation();
+		check(running, "simulation running");
+		check(vibrated > 0, "update statistics collected from simulation");
+	}
+
+	private static boolean refused(Grid grid, float rate, Class<? extends RuntimeException> type) {
+		try {
+			grid.startSimulation(null, rate);
+		} catch (RuntimeException e) {
+			return type.isInstance(e);
+		}
+		return false;
+	}
+
+	/**
+	 * Float array readback of rows and columns must match PVector variants on
+	 * a non-square grid
+	 */
+	private static void checkReadback(PApplet parent) {
+		Grid grid = GridBenchmark.grid(parent, 7, 13);
+		for (int i = 0; i < 13; i++) {
+			for (int j = 0; j < 7; j++) {
+				grid.movePoint(j, i, 0.25f * j + 1, 0.5f * i + 2);
+			}
+		}
+		// Larger than needed, reused for all rows and columns
+		float[] dest = new float[64];
+		boolean rows = true;
+		for (int i = 0; i < 13; i++) {
+			rows &= same(grid.getPointsOfRow(i), grid.getPointsOfRow(i, dest))
+					&& same(grid.getPointsOfRow(i), grid.getPointsOfRow(i, null));
+		}
+		boolean columns = true;
+		for (int j = 0; j < 7; j++) {
+			columns &= same(grid.getPointsOfColumn(j), grid.getPointsOfColumn(j, dest))
+					&& same(grid.getPointsOfColumn(j), grid.getPointsOfColumn(j, new float[2]));
+		}
+		check(rows, "getPointsOfRow(int, float[]) matches getPointsOfRow(int)");
+		check(columns, "getPointsOfColumn(int, float[]) matches getPointsOfColumn(int)");
+	}
+
+	private static boolean same(PVector[] points, float[] xy) {
+		for (int k = 0; k < points.length; k++) {
+			if (points[k].x != xy[2 * k] || points[k].y != xy[2 * k + 1]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Vibration of a mostly locked grid must not depend on the order points
+	 * were unlocked, and with seeded noise it must match the result of a
+	 * mostly unlocked grid
+	 */
+	private static void checkVibration(PApplet parent) {
+		Grid[] grids = new Grid[3];
+		for (int g = 0; g < grids.length; g++) {
+			grids[g] = GridBenchmark.grid(parent, 20);
+			grids[g].lockRect(0, 0, 19, 19);
+			grids[g].vibrate(true, 5, GridConstants.VIBRATE_ALL);
+		}
+		for (int k = 0; k < 16; k++) {
+			grids[0].unLockPoint(new PVector(2 + k % 4, 2 + k / 4));
+			grids[1].unLockPoint(new PVector(2 + (15 - k) % 4, 2 + (15 - k) / 4));
+		}
+		grids[2].unLockRect(0, 0, 19, 14);
+		parent.randomSeed(1);
+		parent.noiseSeed(1);
+		grids[0].update();
+		parent.randomSeed(1);
+		parent.noiseSeed(1);
+		grids[1].update();
+		check(sameRect(grids[0], grids[1]), "sketch noise vibration independent of unlock order");
+
+		for (Grid grid : grids) {
+			grid.setNoiseSeed(7);
+			grid.update();
+		}
+		check(sameRect(grids[0], grids[1]) && sameRect(grids[0], grids[2]),
+				"seeded vibration same for mostly locked and unlocked grids");
+	}
+
+	private static boolean sameRect(Grid a, Grid b) {
+		for (int i = 2; i < 6; i++) {
+			for (int j = 2; j < 6; j++) {
+				if (!a.getPosFromCoordinates(j, i).equals(b.getPosFromCoordinates(j, i))) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Culling of a one column grid (consecutive point indexes in vertical
+	 * segments) must draw the same segments as without culling
+	 */
+	private static void checkCullingColumn(PApplet parent) {
+		CountingGraphics g = (CountingGraphics) parent.g;
+		Grid grid = GridBenchmark.grid(parent, 1, 20);
+		g.reset();
+		grid.render();
+		long lines = g.lines;
+		g.reset();
+		grid.setCulling(true);
+		boolean ok;
+		try {
+			grid.render();
+			ok = g.lines == lines;
+		} catch (RuntimeException e) {
+			ok = false;
+		}
+		g.reset();
+		check(ok && lines == 19, "culling of one column grid");
+	}
+
+	/**
+	 * Merged segments of level of detail must not be drawn over hidden points
+	 * of a drawn row/column
+	 */
+	private static void checkLevelOfDetailHidden() {
+		final PVector[] hidden = { new PVector(2, 4), new PVector(8, 6) };
+		final float[] locations = new float[2 * hidden.length];
+		final boolean[] covered = { false };
+		PApplet parent = new PApplet();
+		parent.g = new CountingGraphics(1000, 1000) {
+			@Override
+			public void line(float x1, float y1, float x2, float y2) {
+				super.line(x1, y1, x2, y2);
+				for (int k = 0; k < locations.length; k += 2) {
+					covered[0] |= between(locations[k], x1, x2) && between(locations[k + 1], y1, y2);
+				}
+			}
+		};
+		parent.width = 1000;
+		parent.height = 1000;
+		// Cells about 10 pixels, every 4th row/column drawn
+		Grid grid = GridBenchmark.grid(parent, 100, 100);
+		for (int k = 0; k < hidden.length; k++) {
+			grid.hidePoint(hidden[k], true);
+			PVector p = grid.getPosFromCoordinates((int) hidden[k].x, (int) hidden[k].y);
+			locations[2 * k] = p.x;
+			locations[2 * k + 1] = p.y;
+		}
+		grid.setLevelOfDetail(true, 40);
+		grid.render();
+		check(!covered[0], "level of detail segments skip hidden points");
+	}
+
+	private static boolean between(float v, float a, float b) {
+		return v >= Math.min(a, b) && v <= Math.max(a, b);
+	}
+
+	/**
+	 * Retained mode needs OpenGL shapes, other renderers must draw the grid
+	 * as batched mode (one style for each segment/point)
+	 */
+	private static void checkRetainedFallback(PApplet parent) {
+		CountingGraphics g = (CountingGraphics) parent.g;
+		Grid grid = GridBenchmark.grid(parent, 20);
+		grid.setGridContourColor(0xFFFF0000);
+		grid.setRenderMode(GridConstants.RENDER_BATCHED);
+		g.reset();
+		grid.render();
+		long batched = g.total();
+		grid.setRenderMode(GridConstants.RENDER_RETAINED);
+		g.reset();
+		boolean ok;
+		try {
+			grid.render();
+			ok = g.total() == batched;
+		} catch (RuntimeException e) {
+			ok = false;
+		}
+		g.reset();
+		check(ok && batched > 0, "retained mode without OpenGL drawn as batched");
+	}
+}
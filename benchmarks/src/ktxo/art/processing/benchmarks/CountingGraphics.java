@@ -0,0 +1,128 @@
+package ktxo.art.processing.benchmarks;
+
+import processing.core.*;
+
+/**
+ * Headless {@link PGraphics} stand-in used by benchmarks: nothing is drawn,
+ * draw calls and stroke state changes are counted.
+ * 
+ * @author ktxo.art@gmail.com
+ *
+ */
+public class CountingGraphics extends PGraphics {
+	public long lines = 0;
+	public long points = 0;
+	public long vertices = 0;
+	public long shapes = 0;
+	public long strokes = 0;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param width  Width
+	 * @param height Height
+	 */
+	public CountingGraphics(int width, int height) {
+		setSize(width, height);
+		colorMode(RGB, 255);
+	}
+
+	/**
+	 * Build a headless sketch drawing into a {@link CountingGraphics}
+	 * 
+	 * @param width  Sketch width
+	 * @param height Sketch height
+	 * 
+	 * @return Sketch
+	 */
+	public static PApplet sketch(int width, int height) {
+		PApplet parent = new PApplet();
+		parent.g = new CountingGraphics(width, height);
+		parent.width = width;
+		parent.height = height;
+		return parent;
+	}
+
+	/**
+	 * Reset counters
+	 */
+	public void reset() {
+		lines = points = vertices = shapes = strokes = 0;
+	}
+
+	/**
+	 * Get total number of draw calls and state changes
+	 * 
+	 * @return Number of calls
+	 */
+	public long total() {
+		return lines + points + vertices + shapes + strokes;
+	}
+
+	@Override
+	public void line(float x1, float y1, float x2, float y2) {
+		lines++;
+	}
+
+	@Override
+	public void point(float x, float y) {
+		points++;
+	}
+
+	@Override
+	public void quad(float x1, float y1, float x2, float y2, float x3, float y3, float x4, float y4) {
+		shapes++;
+	}
+
+	@Override
+	public void beginShape(int kind) {
+		shapes++;
+	}
+
+	@Override
+	public void endShape(int mode) {
+	}
+
+	@Override
+	public void vertex(float x, float y) {
+		vertices++;
+	}
+
+	@Override
+	public void vertex(float[] v) {
+		vertices++;
+	}
+
+	@Override
+	public void stroke(int rgb) {
+		strokes++;
+		super.stroke(rgb);
+	}
+
+	@Override
+	public void strokeWeight(float weight) {
+		strokes++;
+		super.strokeWeight(weight);
+	}
+
+	@Override
+	public void strokeCap(int cap) {
+		strokes++;
+		super.strokeCap(cap);
+	}
+
+	@Override
+	public void blendMode(int mode) {
+	}
+
+	// No transformations: screen coordinates are model coordinates (culling)
+	@Override
+	public float screenX(float x, float y) {
+		return x;
+	}
+
+	@Override
+	public float screenY(float x, float y) {
+		return y;
+	}
+}
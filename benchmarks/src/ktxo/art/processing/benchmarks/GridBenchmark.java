@@ -0,0 +1,132 @@
+package ktxo.art.processing.benchmarks;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import ktxo.art.processing.Grid;
+import processing.core.PApplet;
+import processing.core.PVector;
+
+/**
+ * Benchmarks for {@link Grid} point updates and copies.
+ * 
+ * @author ktxo.art@gmail.com
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GridBenchmark {
+	@Param({ "10", "100", "500", "1000" })
+	public int size;
+
+	private PrintStream out;
+	private Grid grid;
+	private PVector[] rowTargets;
+	private PVector[] columnTargets;
+	private PVector target;
+	private int next = 0;
+
+	/**
+	 * Build a size x size grid covering 1000x1000
+	 * 
+	 * @param parent Sketch
+	 * @param size   Number of points along each axis
+	 * 
+	 * @return Grid
+	 */
+	static Grid grid(PApplet parent, int size) {
+		return grid(parent, size, size);
+	}
+
+	/**
+	 * Build a npointx x npointy grid covering 1000x1000
+	 * 
+	 * @param parent  Sketch
+	 * @param npointx Number of points along x-axis
+	 * @param npointy Number of points along y-axis
+	 * 
+	 * @return Grid
+	 */
+	static Grid grid(PApplet parent, int npointx, int npointy) {
+		PrintStream out = System.out;
+		// Skip library welcome message
+		System.setOut(new PrintStream(new OutputStream() {
+			public void write(int b) {
+			}
+		}));
+		try {
+			return new Grid(parent, npointx, npointy, 1000, 1000);
+		} finally {
+			System.setOut(out);
+		}
+	}
+
+	@Setup
+	public void setup() {
+		PApplet parent = CountingGraphics.sketch(1000, 1000);
+		grid = grid(parent, size);
+		rowTargets = new PVector[size];
+		columnTargets = new PVector[size];
+		for (int i = 0; i < size; i++) {
+			rowTargets[i] = new PVector(i * 1000F / size, -50);
+			columnTargets[i] = new PVector(-50, i * 1000F / size);
+		}
+		target = new PVector(500, 500);
+		// clone() prints library welcome message
+		out = System.out;
+		System.setOut(new PrintStream(new OutputStream() {
+			public void write(int b) {
+			}
+		}));
+	}
+
+	@TearDown
+	public void tearDown() {
+		System.setOut(out);
+	}
+
+	/**
+	 * One call of movePoint with factor, on a different point each time
+	 */
+	@Benchmark
+	public Grid movePoint() {
+		next = (next + 1) % grid.getNumOfPoints();
+		grid.movePoint(new PVector(next % size, next / size), target, 0.01F);
+		return grid;
+	}
+
+	@Benchmark
+	public Grid moveRowTo() {
+		grid.moveRowTo(size / 2, rowTargets, 0.01F);
+		return grid;
+	}
+
+	@Benchmark
+	public Grid moveColumnTo() {
+		grid.moveColumnTo(size / 2, columnTargets, 0.01F);
+		return grid;
+	}
+
+	@Benchmark
+	public Grid fillGrid() {
+		grid.fillGrid(0xFF808080);
+		return grid;
+	}
+
+	@Benchmark
+	public Grid cloneGrid() {
+		return grid.clone();
+	}
+
+	@Benchmark
+	public PVector[] getPoints() {
+		return grid.getPoints();
+	}
+}
@@ -0,0 +1,57 @@
+package ktxo.art.processing.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import ktxo.art.processing.Grid;
+import ktxo.art.processing.GridConstants;
+import processing.core.PApplet;
+
+/**
+ * {@link Grid#render()} benchmarks, with and without vibration, for each
+ * render mode.
+ * 
+ * @author ktxo.art@gmail.com
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RenderBenchmark {
+	@Param({ "10", "100", "500", "1000" })
+	public int size;
+
+	@Param({ "" + GridConstants.RENDER_IMMEDIATE, "" + GridConstants.RENDER_BATCHED })
+	public int mode;
+
+	private CountingGraphics graphics;
+	private Grid grid;
+	private Grid vibrating;
+
+	@Setup
+	public void setup() {
+		PApplet parent = CountingGraphics.sketch(1000, 1000);
+		graphics = (CountingGraphics) parent.g;
+		grid = GridBenchmark.grid(parent, size);
+		grid.setRenderMode(mode);
+		vibrating = GridBenchmark.grid(parent, size);
+		vibrating.setRenderMode(mode);
+		vibrating.vibrate(true, 0.05F, GridConstants.VIBRATE_ALL);
+	}
+
+	@Benchmark
+	public long render() {
+		grid.render();
+		return graphics.total();
+	}
+
+	@Benchmark
+	public long renderVibration() {
+		vibrating.render();
+		return graphics.total();
+	}
+}
@@ -0,0 +1,76 @@
+package ktxo.art.processing.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import ktxo.art.processing.Grid;
+import ktxo.art.processing.GridConstants;
+import processing.core.PApplet;
+
+/**
+ * Bulk update benchmarks: {@link Grid#move(float, float)},
+ * {@link Grid#moveRow(int, float, int)}, {@link Grid#moveColumn(int, float, int)}
+ * and {@link Grid#expand(float, int)}, with vectorized updates enabled and
+ * disabled (see {@link Grid#setVectorized(boolean)}).
+ * 
+ * @author ktxo.art@gmail.com
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransformBenchmark {
+	@Param({ "100", "500", "1000" })
+	public int size;
+
+	@Param({ "true", "false" })
+	public boolean vectorized;
+
+	private Grid grid;
+	private float offset = 1;
+
+	@Setup
+	public void setup() {
+		PApplet parent = CountingGraphics.sketch(1000, 1000);
+		grid = GridBenchmark.grid(parent, size);
+		grid.setVectorized(vectorized);
+	}
+
+	/**
+	 * Move whole grid back and forth
+	 */
+	@Benchmark
+	public Grid move() {
+		offset = -offset;
+		grid.move(offset, offset);
+		return grid;
+	}
+
+	@Benchmark
+	public Grid moveRow() {
+		offset = -offset;
+		grid.moveRow(size / 2, offset, GridConstants.GRID_AX);
+		return grid;
+	}
+
+	@Benchmark
+	public Grid moveColumn() {
+		offset = -offset;
+		grid.moveColumn(size / 2, offset, GridConstants.GRID_AY);
+		return grid;
+	}
+
+	/**
+	 * Expand and shrink both axes
+	 */
+	@Benchmark
+	public Grid expand() {
+		offset = -offset;
+		grid.expand(offset * 0.001F, GridConstants.GRID_ALL);
+		return grid;
+	}
+}
@@ -0,0 +1,130 @@
+package ktxo.art.processing;
+
+/**
+ * Bounding box of a set of grid points, updated in O(1) when one point moves.
+ * 
+ * The box is only scanned again when an extreme point moves inward (or
+ * after bulk changes, see {@link #invalidate()}).
+ * 
+ * @author ktxo.art@gmail.com
+ *
+ */
+class Bounds {
+	float min_x;
+	float min_y;
+	float max_x;
+	float max_y;
+	private boolean valid = false;
+	// Points in the set: from, from + stride, ... (to excluded)
+	private final int from;
+	private final int to;
+	private final int stride;
+
+	/**
+	 * Constructor, set up to last point
+	 * 
+	 * @param from   First point index
+	 * @param stride Distance between point indexes
+	 */
+	Bounds(int from, int stride) {
+		this(from, Integer.MAX_VALUE, stride);
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param from   First point index
+	 * @param to     Last point index (excluded)
+	 * @param stride Distance between point indexes
+	 */
+	Bounds(int from, int to, int stride) {
+		this.from = from;
+		this.to = to;
+		this.stride = stride;
+	}
+
+	/**
+	 * Check if a point index belongs to this set
+	 * 
+	 * @param idx Point index
+	 * 
+	 * @return True if point is in the set
+	 */
+	boolean contains(int idx) {
+		return idx >= from && idx < to && (idx - from) % stride == 0;
+	}
+
+	/**
+	 * Force a scan on next {@link #check(float[], float[])}
+	 */
+	void invalidate() {
+		valid = false;
+	}
+
+	/**
+	 * Scan points if needed
+	 * 
+	 * @param x X locations
+	 * @param y Y locations
+	 */
+	void check(float[] x, float[] y) {
+		if (valid) {
+			return;
+		}
+		min_x = min_y = Float.POSITIVE_INFINITY;
+		max_x = max_y = Float.NEGATIVE_INFINITY;
+		for (int i = from, end = Math.min(to, x.length); i < end; i += stride) {
+			include(x[i], y[i]);
+		}
+		valid = true;
+	}
+
+	private void include(float x, float y) {
+		if (x < min_x) {
+			min_x = x;
+		}
+		if (x > max_x) {
+			max_x = x;
+		}
+		if (y < min_y) {
+			min_y = y;
+		}
+		if (y > max_y) {
+			max_y = y;
+		}
+	}
+
+	/**
+	 * Update box after moving one point of the set
+	 * 
+	 * @param ox Old x location
+	 * @param oy Old y location
+	 * @param nx New x location
+	 * @param ny New y location
+	 */
+	void move(float ox, float oy, float nx, float ny) {
+		if (!valid) {
+			return;
+		}
+		if ((ox == min_x && nx > ox) || (ox == max_x && nx < ox) || (oy == min_y && ny > oy)
+				|| (oy == max_y && ny < oy)) {
+			// Extreme point moved inward
+			valid = false;
+			return;
+		}
+		include(nx, ny);
+	}
+
+	/**
+	 * Update box after moving all points of the set
+	 * 
+	 * @param dx X offset
+	 * @param dy Y offset
+	 */
+	void translate(float dx, float dy) {
+		min_x += dx;
+		max_x += dx;
+		min_y += dy;
+		max_y += dy;
+	}
+}
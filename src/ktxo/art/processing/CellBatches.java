@@ -0,0 +1,112 @@
+package ktxo.art.processing;
+
+import java.util.Arrays;
+import processing.core.*;
+
+/**
+ * Cell color layer renderer for {@link ktxo.art.processing.Grid} (see
+ * {@link Grid#setCellColor(int, int, int)}).
+ *
+ * Filled cells are sorted by color: fill state is set once for each color and
+ * all its cells are drawn in one beginShape(QUADS) batch. Cells are sorted
+ * again only after colors change.
+ *
+ * @author ktxo.art@gmail.com
+ *
+ */
+class CellBatches {
+	private final Grid grid;
+	// Filled cells sorted by color: color << 32 | cell index
+	private long[] cells = new long[0];
+	private int ncells = 0;
+	private boolean valid = false;
+
+	// =========================================================
+	/**
+	 * Constructor
+	 *
+	 * @param grid Grid to render
+	 */
+	CellBatches(Grid grid) {
+		this.grid = grid;
+	}
+
+	// =========================================================
+	/**
+	 * Force cells to be sorted again on next draw (cell colors changed)
+	 */
+	void invalidate() {
+		valid = false;
+	}
+
+	// =========================================================
+	private void build() {
+		int[] color = grid.cell_color;
+		if (cells.length != color.length) {
+			cells = new long[color.length];
+		}
+		ncells = 0;
+		for (int c = 0; c < color.length; c++) {
+			if ((color[c] >>> 24) != 0) {
+				cells[ncells++] = ((long) color[c] << 32) | c;
+			}
+		}
+		Arrays.sort(cells, 0, ncells);
+		valid = true;
+	}
+
+	// =========================================================
+	/**
+	 * Draw all filled cells
+	 */
+	void draw() {
+		if (!valid) {
+			build();
+		}
+		if (ncells == 0) {
+			return;
+		}
+		PApplet parent = grid.parent;
+		float[] x = grid.draw_x;
+		float[] y = grid.draw_y;
+		int npointx = grid.npointx;
+		int ncols = npointx - 1;
+		GridCulling culling = grid.culling;
+		boolean fill = parent.g.fill;
+		int fillColor = parent.g.fillColor;
+		boolean stroke = parent.g.stroke;
+		int strokeColor = parent.g.strokeColor;
+
+		parent.noStroke();
+		int k = 0;
+		while (k < ncells) {
+			int color = (int) (cells[k] >> 32);
+			parent.fill(color);
+			if (grid.stats != null) {
+				grid.stats.fill_calls++;
+			}
+			parent.beginShape(PConstants.QUADS);
+			for (; k < ncells && (int) (cells[k] >> 32) == color; k++) {
+				int c = (int) cells[k];
+				if (culling != null && !culling.cell(c % ncols, c / ncols)) {
+					continue;
+				}
+				int p0 = c + c / ncols;
+				int p3 = p0 + npointx;
+				parent.vertex(x[p0], y[p0]);
+				parent.vertex(x[p0 + 1], y[p0 + 1]);
+				parent.vertex(x[p3 + 1], y[p3 + 1]);
+				parent.vertex(x[p3], y[p3]);
+			}
+			parent.endShape();
+		}
+		if (stroke) {
+			parent.stroke(strokeColor);
+		}
+		if (fill) {
+			parent.fill(fillColor);
+		} else {
+			parent.noFill();
+		}
+	}
+}
@@ -5,7 +5,11 @@
  */
 package ktxo.art.processing;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
 import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
 import processing.core.*;
 
 // ===================================================================================================
@@ -16,6 +20,10 @@ import processing.core.*;
  * 
  * Each point and line can be configured (weight, color) and moved.
  * 
+ * Point data (location, rest location, color, size, cap, flags) is kept in
+ * flat primitive arrays, {@link Point} objects are only created on demand (see
+ * {@link #getPoint(int, int)}).
+ * 
  * 
  * Grid points are identified by coordinates:
  * 
@@ -73,28 +81,88 @@ public class Grid {
 	public static final float GRID_WEIGHT = 0.5F;
 
 	//private PVector position;
-	private Point[] points;
-	private boolean lockedPoints[];
+	// Point storage (structure of arrays, row-major: index = x + y * npointx)
+	float[] points_x;
+	float[] points_y;
+	float[] points_x0;
+	float[] points_y0;
+	int[] points_color;
+	float[] points_size;
+	int[] points_cap;
+	// Hidden/locked (no vibration) points
+	PointMask points_hidden;
+	private PointMask points_locked;
+	// Cached vibration amplitude (noise at rest location), NaN when not calculated
+	private float[] points_amplitude;
 	private boolean vibration_enable = false;
 	private float vibration_value = 0;
 	private int vibration_direction = GridConstants.VIBRATE_ALL;
+	private NoiseSource vibration_noise;
+	// Noise source can be copied for other threads, values keyed by point
+	private boolean vibration_keyed = false;
+	// Vibration pass counter, used to build random keys
+	private long vibration_frame = 0;
 	private float sizex = 0;
 	private float sizey = 0;
 	private float divx = 0;
 	private float divy = 0;
-	private int npointx = 0;
-	private int npointy = 0;
-	private int npoints = 0;
+	int npointx = 0;
+	int npointy = 0;
+	int npoints = 0;
 	private int grid_color = 0;
 	private int point_color = Grid.POINT_COLOR;
 	private int point_cap = Grid.POINT_CAP;
-	private int[] segment_ax_color;
-	private float[] segment_ax_weight;
-	private int[] segment_ay_color;
-	private float[] segment_ay_weight;
+	int[] segment_ax_color;
+	float[] segment_ax_weight;
+	int[] segment_ay_color;
+	float[] segment_ay_weight;
+	// Segment endpoints and style, shared by renderers
+	GridTopology topology;
 	private float point_size = Grid.POINT_SIZE;
 
 	private float stroke_weight = Grid.GRID_WEIGHT;
+	private int render_mode = GridConstants.RENDER_IMMEDIATE;
+	private GridShape shape = null;
+	private SegmentBatches batches = null;
+	private PointBatches point_batches = null;
+	// Cell colors, (npointx-1)*(npointy-1), alpha 0: not filled. Null until used
+	int[] cell_color = null;
+	private CellBatches cells = null;
+	// Level of detail (see setLevelOfDetail)
+	private boolean lod_enable = false;
+	private float lod_cell_size = 3;
+	private GridLOD lod = null;
+	// Viewport culling (see setCulling), culling is null when disabled
+	private boolean cull_enable = false;
+	private GridCulling cull = null;
+	GridCulling culling = null;
+	private GridSimulation simulation = null;
+	private GridAnimator animator = null;
+	// Bounding boxes: all points, each row and each column
+	private Bounds bounds;
+	Bounds[] bounds_rows;
+	Bounds[] bounds_columns;
+	// Tile index: boxes, versions and hidden summary for each block
+	GridTiles tiles;
+	// Batch edit (see beginEdit)
+	private int edit_depth = 0;
+	private boolean edit_dirty = false;
+	// Render statistics, null when disabled
+	GridStats stats = null;
+	// Locations used by renderers: current locations or latest simulation frame
+	float[] draw_x;
+	float[] draw_y;
+	// Copy of drawn locations in a direct buffer (see setDirectBuffer), null
+	// when disabled. Locations array and tiles version of the last copy
+	private FloatBuffer direct_buffer = null;
+	private float[] direct_source = null;
+	private long direct_version;
+	private boolean parallel_enable = false;
+	private int parallel_threshold = 10000;
+	private ForkJoinPool parallel_pool = ForkJoinPool.commonPool();
+	// Bulk operations with GridKernels (see setVectorized), offsets of one row
+	private boolean vectorized = true;
+	private float[] kernel_row = null;
 
 	PApplet parent;
 	
@@ -133,12 +201,150 @@ public class Grid {
 		Arrays.fill(segment_ay_color, parent.color(GRID_COLOR));
 		segment_ay_weight = new float[sy];
 		Arrays.fill(segment_ay_weight, GRID_WEIGHT);
+
+		topology = new GridTopology(npointx, npointy);
 	}
 
 	private void setSize() {
-		PVector[] corners = getCorners();
-		sizex = corners[GridConstants.UPPER_RIGHT_CORNER].x - corners[GridConstants.UPPER_LEFT_CORNER].x;
-		sizey = corners[GridConstants.BOTTOM_RIGHT_CORNER].y - corners[GridConstants.UPPER_LEFT_CORNER].y;
+		sizex = points_x[npointx - 1] - points_x[0];
+		sizey = points_y[npoints - 1] - points_y[0];
+		if (stats != null) {
+			// Corners copies
+			stats.allocations_avoided += 4;
+		}
+	}
+
+	// =========================================================
+	/**
+	 * Allocate point storage for npoints points
+	 */
+	private void setPoints() {
+		points_x = new float[npoints];
+		points_y = new float[npoints];
+		points_x0 = new float[npoints];
+		points_y0 = new float[npoints];
+		points_color = new int[npoints];
+		points_size = new float[npoints];
+		points_cap = new int[npoints];
+		points_hidden = new PointMask(npoints);
+		points_amplitude = new float[npoints];
+		Arrays.fill(points_amplitude, Float.NaN);
+		points_locked = new PointMask(npoints, true);
+		vibration_noise = new SketchNoise(parent);
+		bounds = new Bounds(0, 1);
+		bounds_rows = new Bounds[npointy];
+		for (int i = 0; i < npointy; i++) {
+			bounds_rows[i] = new Bounds(i * npointx, (i + 1) * npointx, 1);
+		}
+		bounds_columns = new Bounds[npointx];
+		for (int j = 0; j < npointx; j++) {
+			bounds_columns[j] = new Bounds(j, npointx);
+		}
+		tiles = new GridTiles(this);
+	}
+
+	/**
+	 * Initialize one point (current and rest location, style)
+	 * 
+	 * @param idx   Point index
+	 * @param x     X location
+	 * @param y     Y location
+	 * @param color Point color
+	 * @param size  Point size
+	 */
+	private void setPoint(int idx, float x, float y, int color, float size) {
+		points_x[idx] = points_x0[idx] = x;
+		points_y[idx] = points_y0[idx] = y;
+		points_color[idx] = color;
+		points_size[idx] = size;
+		points_cap[idx] = Grid.POINT_CAP;
+	}
+
+	/**
+	 * Move a point and its rest location
+	 * 
+	 * @param idx Point index
+	 * @param x   X location
+	 * @param y   Y location
+	 */
+	private void setPointLocation(int idx, float x, float y) {
+		points_x[idx] = points_x0[idx] = x;
+		points_y[idx] = points_y0[idx] = y;
+		points_amplitude[idx] = Float.NaN;
+	}
+
+	/**
+	 * Move one point and update bounding boxes and size
+	 * 
+	 * @param idx Point index
+	 * @param x   X location
+	 * @param y   Y location
+	 */
+	void movePointLocation(int idx, float x, float y) {
+		if (edit_depth > 0) {
+			// Batch: derived state is calculated on commit()
+			setPointLocation(idx, x, y);
+			tiles.moved(idx);
+			if (!edit_dirty) {
+				edit_dirty = true;
+				invalidateLineBounds();
+			}
+			return;
+		}
+		float ox = points_x[idx];
+		float oy = points_y[idx];
+		setPointLocation(idx, x, y);
+		bounds.move(ox, oy, x, y);
+		bounds_rows[idx / npointx].move(ox, oy, x, y);
+		bounds_columns[idx % npointx].move(ox, oy, x, y);
+		tiles.moved(idx);
+		setSize();
+	}
+
+	/**
+	 * Discard bounding boxes after changing many points, they are calculated
+	 * again when needed
+	 */
+	private void invalidateBounds() {
+		invalidateLineBounds();
+		tiles.invalidate();
+	}
+
+	/**
+	 * Discard bounding boxes of the grid, rows and columns (tiles are kept)
+	 */
+	private void invalidateLineBounds() {
+		bounds.invalidate();
+		for (Bounds b : bounds_rows) {
+			b.invalidate();
+		}
+		for (Bounds b : bounds_columns) {
+			b.invalidate();
+		}
+	}
+
+	/**
+	 * Discard cached vibration amplitudes, they are calculated again on next
+	 * render
+	 */
+	private void invalidateAmplitudes() {
+		Arrays.fill(points_amplitude, Float.NaN);
+	}
+
+	/**
+	 * Invalidate render caches after a change in segments or points style
+	 */
+	private void styleChanged() {
+		tiles.styleChanged();
+		if (shape != null) {
+			shape.invalidate();
+		}
+		if (batches != null) {
+			batches.invalidate();
+		}
+		if (point_batches != null) {
+			point_batches.invalidate();
+		}
 	}
 
 	// =========================================================
@@ -163,22 +369,17 @@ public class Grid {
 		this.divx = -1;
 		this.divy = -1;
 		//position = rows[0][0].getCenter();
-		points = new Point[(npointx * npointy)];
+		setPoints();
 		int id = 0;
 
 		for (int i = 0; i < npointy; i++) {
 			this.npointx = rows[i].length;
 			for (int j = 0; j < npointx; j++) {
-				points[id] = new Point(parent, rows[i][j].getCenter(), Grid.POINT_COLOR, Grid.POINT_SIZE);
+				PVector c = rows[i][j].getCenter();
+				setPoint(id, c.x, c.y, Grid.POINT_COLOR, Grid.POINT_SIZE);
 				id++;
 			}
 		}
-		lockedPoints = new boolean[npointx * npointy];
-		Arrays.fill(lockedPoints, Boolean.FALSE);
-
-		for (int i = 0; i < npoints; i++) {
-			points[i].lock(false);
-		}
 		setSegments();
 		setSize();
 		welcome();
@@ -204,20 +405,14 @@ public class Grid {
 		this.divy = -1;
 		// position = new PVector(parent.width / 2 - sizex / 2, parent.height / 2 -
 		// sizey / 2);
-		this.points = new Point[(npointx * npointy)];
+		setPoints();
 		int id = 0;
 		for (int i = 0; i < npointy; i++) {
 			for (int j = 0; j < npointx; j++) {
-				points[id] = new Point(parent, new PVector(x[j], y[i]), point_color, 10);
+				setPoint(id, x[j], y[i], point_color, 10);
 				id++;
 			}
 		}
-		lockedPoints = new boolean[npointx * npointy];
-		Arrays.fill(lockedPoints, Boolean.FALSE);
-
-		for (int i = 0; i < npoints; i++) {
-			points[i].lock(false);
-		}
 		setSegments();
 		setSize();
 		welcome();
@@ -251,21 +446,15 @@ public class Grid {
 		// position = new PVector(parent.width / 2 - sizex / 2, parent.height / 2 -
 		// sizey / 2);
 
-		points = new Point[(npointx * npointy)];
+		setPoints();
 
 		int id = 0;
 		for (int i = 0; i < npointy; i++) {
 			for (int j = 0; j < npointx; j++) {
-				points[id] = new Point(parent, new PVector(j * divx, i * divy), point_color, 10F);
+				setPoint(id, j * divx, i * divy, point_color, 10F);
 				id++;
 			}
 		}
-		lockedPoints = new boolean[npointx * npointy];
-		Arrays.fill(lockedPoints, Boolean.FALSE);
-
-		for (int i = 0; i < npoints; i++) {
-			points[i].lock(false);
-		}
 		setSegments();
 		setSize();
 		welcome();
@@ -300,17 +489,33 @@ public class Grid {
 		g.point_color = point_color;
 		g.point_size = point_size;
 		// g.position = position.copy();
-		g.lockedPoints = Arrays.copyOf(lockedPoints, lockedPoints.length);
+		g.points_locked = points_locked.copy();
 		g.vibration_enable = vibration_enable;
 		g.vibration_value = vibration_value;
-
-		for (int i = 0; i < npoints; i++) {
-			g.points[i] = points[i].clone();
-		}
+		g.vibration_direction = vibration_direction;
+		g.vibration_noise = vibration_noise;
+		g.vibration_keyed = vibration_keyed;
+		g.render_mode = render_mode;
+		g.setLevelOfDetail(lod_enable, lod_cell_size);
+		g.setDirectBuffer(direct_buffer != null);
+		g.vectorized = vectorized;
+
+		// Rest location of cloned points is the current location
+		g.points_x = Arrays.copyOf(points_x, npoints);
+		g.points_y = Arrays.copyOf(points_y, npoints);
+		g.points_x0 = Arrays.copyOf(points_x, npoints);
+		g.points_y0 = Arrays.copyOf(points_y, npoints);
+		g.points_color = Arrays.copyOf(points_color, npoints);
+		g.points_size = Arrays.copyOf(points_size, npoints);
+		g.points_cap = Arrays.copyOf(points_cap, npoints);
+		g.points_hidden = points_hidden.copy();
 		g.segment_ax_color = Arrays.copyOf(segment_ax_color, segment_ax_color.length);
 		g.segment_ax_weight = Arrays.copyOf(segment_ax_weight, segment_ax_weight.length);
 		g.segment_ay_color = Arrays.copyOf(segment_ay_color, segment_ay_color.length);
 		g.segment_ay_weight = Arrays.copyOf(segment_ay_weight, segment_ay_weight.length);
+		if (cell_color != null) {
+			g.cell_color = Arrays.copyOf(cell_color, cell_color.length);
+		}
 		return g;
 	}
 
@@ -322,12 +527,7 @@ public class Grid {
 	 * @param point New location (x,y)
 	 */
 	public void move(PVector point) {
-
-		PVector d = point.sub(points[0].getCenter());
-		for (Point p : points) {
-			p.move(p.getCenter().add(d));
-		}
-		setSize();
+		move(point.x, point.y);
 	}
 
 	/**
@@ -338,11 +538,24 @@ public class Grid {
 	 * @param y Y location
 	 */
 	public void move(float x, float y) {
-		float dx = x - points[0].getCenter().x;
-		float dy = y - points[0].getCenter().y;
-		for (Point point : points) {
-			point.move(PVector.add(point.getCenter(), new PVector(dx, dy)));
+		float dx = x - points_x[0];
+		float dy = y - points_y[0];
+		if (vectorized) {
+			GridKernels.translate(points_x, points_x0, points_y, points_y0, points_amplitude, 0, npoints, dx, dy);
+		} else {
+			for (int i = 0; i < npoints; i++) {
+				setPointLocation(i, points_x[i] + dx, points_y[i] + dy);
+			}
+		}
+		// Translation keeps the same extreme points
+		bounds.translate(dx, dy);
+		for (Bounds b : bounds_rows) {
+			b.translate(dx, dy);
 		}
+		for (Bounds b : bounds_columns) {
+			b.translate(dx, dy);
+		}
+		tiles.translate(dx, dy);
 		setSize();
 	}
 
@@ -358,8 +571,7 @@ public class Grid {
 	public void movePoint(PVector coord, PVector newpos) {
 		// newpos.sub(getPosition());
 		// PVector n = PVector.sub(newpos,getPosition());
-		points[getIndexFromCoordinates(coord)].move(newpos);
-		setSize();
+		movePointLocation(getIndexFromCoordinates(coord), newpos.x, newpos.y);
 	}
 
 	/**
@@ -371,8 +583,8 @@ public class Grid {
 	 * @param y2 Y location in screen
 	 */
 	public void movePoint(int x1, int y1, float x2, float y2) {
-		points[getIndexFromCoordinates(x1, y1)].move(x2, y2);
-		setSize();
+		int idx = getIndexFromCoordinates(x1, y1);
+		movePointLocation(idx, points_x[idx] + x2, points_y[idx] + y2);
 	}
 
 	/**
@@ -384,12 +596,7 @@ public class Grid {
 	 * @param factor Move point this factor
 	 */
 	public void movePoint(PVector coord, PVector newpos, float factor) {
-		PVector s = getPosFromCoordinates((int)coord.x, (int)coord.y);
-
-		PVector dir = PVector.sub(newpos, s).normalize();
-		dir.mult(factor);
-		PVector aux = PVector.add(s, dir);
-		movePoint(coord, aux);
+		movePointToward((int) coord.x, (int) coord.y, newpos.x, newpos.y, factor);
 	}
 
 	/**
@@ -403,12 +610,89 @@ public class Grid {
 	 * @param factor Move point this factor
 	 */
 	public void movePoint(int x1, int y1, float x2, float y2, float factor) {
-		PVector s = getPosFromCoordinates(x1, y1);
-		PVector d = new PVector(x2, y2);
-		PVector dir = PVector.sub(d, s).normalize();
-		dir.mult(factor);
-		PVector aux = PVector.add(s, dir);
-		movePoint(new PVector(x1, y1), aux);
+		movePointToward(x1, y1, x2, y2, factor);
+	}
+
+	/**
+	 * Move a grid point identified by coord (x1,y1) to location (x2,y2) in screen.
+	 * No objects are allocated, see also {@link #beginEdit()}
+	 * 
+	 * @param x1 X-Coordinate (from 0 to npointx-1)
+	 * @param y1 Y-Coordinate (from 0 to npointy-1)
+	 * @param x2 X location in screen
+	 * @param y2 Y location in screen
+	 */
+	public void movePointTo(int x1, int y1, float x2, float y2) {
+		movePointLocation(getIndexFromCoordinates(x1, y1), x2, y2);
+	}
+
+	/**
+	 * Move a grid point identified by coord (x1,y1) in direction to location
+	 * (x2,y2), a distance equal to factor. No objects are allocated, see also
+	 * {@link #beginEdit()}
+	 * 
+	 * @param x1     X-Coordinate (from 0 to npointx-1)
+	 * @param y1     Y-Coordinate (from 0 to npointy-1)
+	 * @param x2     X location in screen
+	 * @param y2     Y location in screen
+	 * @param factor Move point this factor
+	 */
+	public void movePointToward(int x1, int y1, float x2, float y2, float factor) {
+		int idx = getIndexFromCoordinates(x1, y1);
+		float dx = x2 - points_x[idx];
+		float dy = y2 - points_y[idx];
+		float len = (float) Math.sqrt(dx * dx + dy * dy);
+		if (len != 0) {
+			dx *= factor / len;
+			dy *= factor / len;
+		}
+		movePointLocation(idx, points_x[idx] + dx, points_y[idx] + dy);
+	}
+
+	// =========================================================
+	/**
+	 * Start a batch of point changes. Point moves inside the batch only change
+	 * point locations, derived state (grid size, bounding boxes) is calculated
+	 * once on {@link #commit()}, bounds queried inside the batch may not include
+	 * later moves. Batches can be nested.
+	 * 
+	 * <pre>
+	 * grid.beginEdit();
+	 * for (...) {
+	 *   grid.movePointToward(x, y, tx, ty, 1);
+	 * }
+	 * grid.commit();
+	 * </pre>
+	 */
+	public void beginEdit() {
+		edit_depth++;
+	}
+
+	/**
+	 * End a batch of point changes started with {@link #beginEdit()}
+	 */
+	public void commit() {
+		assert edit_depth > 0 : "commit() without beginEdit()";
+		if (edit_depth > 0 && --edit_depth == 0 && edit_dirty) {
+			edit_dirty = false;
+			// Bounds may have been calculated again inside the batch
+			invalidateLineBounds();
+			setSize();
+		}
+	}
+
+	/**
+	 * Run a batch of point changes, see {@link #beginEdit()}
+	 * 
+	 * @param editor Changes to apply, called once with this grid
+	 */
+	public void edit(GridUpdater editor) {
+		beginEdit();
+		try {
+			editor.update(this);
+		} finally {
+			commit();
+		}
 	}
 
 	// =========================================================
@@ -419,10 +703,10 @@ public class Grid {
 	 */
 	public PVector[] getCorners() {
 		PVector corners[] = new PVector[4];
-		corners[0] = points[0].getCenter().copy();
-		corners[1] = points[npointx - 1].getCenter().copy();
-		corners[2] = points[npointx * (npointy - 1)].getCenter().copy();
-		corners[3] = points[npoints - 1].getCenter().copy();
+		corners[0] = getCoordinatesFromIndex(0);
+		corners[1] = getCoordinatesFromIndex(npointx - 1);
+		corners[2] = getCoordinatesFromIndex(npointx * (npointy - 1));
+		corners[3] = getCoordinatesFromIndex(npoints - 1);
 
 		return corners;
 	}
@@ -434,11 +718,7 @@ public class Grid {
 	 * @param color Color, e.g.: color(255,0)
 	 */
 	public void fillGrid(int color) {
-		for (int i = 0; i < npointy - 1; i++) {
-			for (int j = 0; j < npointx - 1; j++) {
-				fillBlock(new PVector(j, i), color);
-			}
-		}
+		drawBlocks(0, 0, npointx - 1, npointy - 1, color);
 	}
 
 	/**
@@ -449,14 +729,10 @@ public class Grid {
 	 * @param color Color, e.g.: color(255,0)
 	 */
 	public void fillBlock(PVector coord, int color) {
-		if (coord.x >= 0 && coord.x < (npointx - 1) && coord.y >= 0 && coord.y < (npointy - 1)) {
-			PVector p0 = getPosFromCoordinates((int) coord.x, (int) coord.y);
-			PVector p1 = getPosFromCoordinates((int) coord.x + 1, (int) coord.y);
-			PVector p2 = getPosFromCoordinates((int) coord.x + 1, (int) coord.y + 1);
-			PVector p3 = getPosFromCoordinates((int) coord.x, (int) coord.y + 1);
-			parent.fill(color);
-			parent.quad(p0.x, p0.y, p1.x, p1.y, p2.x, p2.y, p3.x, p3.y);
-			parent.noFill();
+		int x = (int) coord.x;
+		int y = (int) coord.y;
+		if (x >= 0 && x < (npointx - 1) && y >= 0 && y < (npointy - 1)) {
+			drawBlocks(x, y, x + 1, y + 1, color);
 		}
 	}
 
@@ -468,15 +744,7 @@ public class Grid {
 	 */
 	public void fillRow(int row, int color) {
 		if (row < (npointy - 1)) {
-			parent.fill(color);
-			for (int i = 0; i < npointx - 1; i++) {
-				PVector p0 = getPosFromCoordinates(i, row);
-				PVector p1 = getPosFromCoordinates(i + 1, row);
-				PVector p2 = getPosFromCoordinates(i + 1, row + 1);
-				PVector p3 = getPosFromCoordinates(i, row + 1);
-				parent.quad(p0.x, p0.y, p1.x, p1.y, p2.x, p2.y, p3.x, p3.y);
-			}
-			parent.noFill();
+			drawBlocks(0, row, npointx - 1, row + 1, color);
 		}
 	}
 
@@ -488,16 +756,139 @@ public class Grid {
 	 */
 	public void fillColumn(int col, int color) {
 		if (col < (npointx - 1)) {
-			parent.fill(color);
-			for (int i = 0; i < npointy - 1; i++) {
-				PVector p0 = getPosFromCoordinates(col, i);
-				PVector p1 = getPosFromCoordinates(col + 1, i);
-				PVector p2 = getPosFromCoordinates(col + 1, i + 1);
-				PVector p3 = getPosFromCoordinates(col, i + 1);
-				parent.quad(p0.x, p0.y, p1.x, p1.y, p2.x, p2.y, p3.x, p3.y);
+			drawBlocks(col, 0, col + 1, npointy - 1, color);
+		}
+	}
+
+	/**
+	 * Draw blocks from (x0,y0) to (x1-1,y1-1) in one batch of quads
+	 */
+	private void drawBlocks(int x0, int y0, int x1, int y1, int color) {
+		long t = stats != null ? System.nanoTime() : 0;
+		parent.fill(color);
+		parent.beginShape(PConstants.QUADS);
+		for (int i = y0; i < y1; i++) {
+			for (int j = x0; j < x1; j++) {
+				int p0 = j + i * npointx;
+				int p3 = p0 + npointx;
+				parent.vertex(points_x[p0], points_y[p0]);
+				parent.vertex(points_x[p0 + 1], points_y[p0 + 1]);
+				parent.vertex(points_x[p3 + 1], points_y[p3 + 1]);
+				parent.vertex(points_x[p3], points_y[p3]);
 			}
-			parent.noFill();
 		}
+		parent.endShape();
+		parent.noFill();
+		if (stats != null) {
+			stats.fill_nanos += System.nanoTime() - t;
+			stats.fill_calls++;
+		}
+	}
+
+	// =========================================================
+	/**
+	 * Set color of a cell (block with upper left point at (x,y)). Cells are
+	 * drawn by {@link #render()} under segments and points, a color with alpha
+	 * 0 (e.g.: 0) leaves the cell unfilled.
+	 * 
+	 * Unlike {@link #fillBlock(PVector, int)} colors are kept, cells with the
+	 * same color are drawn in one batch and in retained mode
+	 * ({@link GridConstants#RENDER_RETAINED}, P2D/P3D) only changed cells are
+	 * rewritten.
+	 * 
+	 * @param x     X-Coordinate (from 0 to npointx-2)
+	 * @param y     Y-Coordinate (from 0 to npointy-2)
+	 * @param color Color, e.g.: color(255,0)
+	 */
+	public void setCellColor(int x, int y, int color) {
+		if (x >= 0 && x < (npointx - 1) && y >= 0 && y < (npointy - 1)) {
+			cellColors()[x + y * (npointx - 1)] = color;
+			cellsChanged();
+		}
+	}
+
+	/**
+	 * Set color of all cells, see {@link #setCellColor(int, int, int)}
+	 * 
+	 * @param colors Colors, row by row (length must be
+	 *               (npointx-1)*(npointy-1))
+	 */
+	public void setCellColors(int[] colors) {
+		int[] c = cellColors();
+		assert c.length == colors.length
+				: String.format("Number of colors '%d' must be equal to number of cells '%d'", colors.length, c.length);
+
+		System.arraycopy(colors, 0, c, 0, c.length);
+		cellsChanged();
+	}
+
+	/**
+	 * Set color of all cells of a row, see {@link #setCellColor(int, int, int)}
+	 * 
+	 * @param row   Row number (from 0 to npointy-2)
+	 * @param color Color, e.g.: color(255,0)
+	 */
+	public void setRowCellColor(int row, int color) {
+		if (row >= 0 && row < (npointy - 1)) {
+			int from = row * (npointx - 1);
+			Arrays.fill(cellColors(), from, from + npointx - 1, color);
+			cellsChanged();
+		}
+	}
+
+	/**
+	 * Set color of all cells of a column, see
+	 * {@link #setCellColor(int, int, int)}
+	 * 
+	 * @param col   Column number (from 0 to npointx-2)
+	 * @param color Color, e.g.: color(255,0)
+	 */
+	public void setColumnCellColor(int col, int color) {
+		if (col >= 0 && col < (npointx - 1)) {
+			int[] c = cellColors();
+			for (int i = col; i < c.length; i += npointx - 1) {
+				c[i] = color;
+			}
+			cellsChanged();
+		}
+	}
+
+	/**
+	 * Remove color of all cells
+	 */
+	public void clearCellColors() {
+		if (cell_color != null) {
+			Arrays.fill(cell_color, 0);
+			cellsChanged();
+		}
+	}
+
+	/**
+	 * Get color of a cell, see {@link #setCellColor(int, int, int)}
+	 * 
+	 * @param x X-Coordinate (from 0 to npointx-2)
+	 * @param y Y-Coordinate (from 0 to npointy-2)
+	 * @return Color (0 if not filled)
+	 */
+	public int getCellColor(int x, int y) {
+		return cell_color == null ? 0 : cell_color[x + y * (npointx - 1)];
+	}
+
+	private int[] cellColors() {
+		if (cell_color == null) {
+			cell_color = new int[(npointx - 1) * (npointy - 1)];
+			// Retained shape has no cells yet
+			styleChanged();
+		}
+		return cell_color;
+	}
+
+	private void cellsChanged() {
+		if (cells != null) {
+			cells.invalidate();
+		}
+		// Retained cells are recolored with vertices of changed tiles
+		tiles.touch();
 	}
 
 	// =========================================================
@@ -511,13 +902,34 @@ public class Grid {
 	 *              ({@link ktxo.art.processing.GridConstants#GRID_AY})
 	 */
 	public void moveRow(int row, float value, int on) {
-		for (int i = 0; i < npointx; i++) {
-			if (on == GridConstants.GRID_AX) {
-				points[getIndexFromCoordinates(i, row)].moveX(value);
-			} else if (on == GridConstants.GRID_AY) {
-				points[getIndexFromCoordinates(i, row)].moveY(value);
-			}
+		if (vectorized) {
+			int first = row * npointx;
+			forRange(0, npointx, npointx, (from, to) -> {
+				if (on == GridConstants.GRID_AX) {
+					GridKernels.offset(points_x, points_x0, first + from, first + to, value);
+					GridKernels.rest(points_y, points_y0, first + from, first + to);
+				} else if (on == GridConstants.GRID_AY) {
+					GridKernels.rest(points_x, points_x0, first + from, first + to);
+					GridKernels.offset(points_y, points_y0, first + from, first + to, value);
+				} else {
+					return;
+				}
+				Arrays.fill(points_amplitude, first + from, first + to, Float.NaN);
+			});
+			invalidateBounds();
+			return;
 		}
+		forRange(0, npointx, npointx, (from, to) -> {
+			for (int i = from; i < to; i++) {
+				int idx = getIndexFromCoordinates(i, row);
+				if (on == GridConstants.GRID_AX) {
+					setPointLocation(idx, points_x[idx] + value, points_y[idx]);
+				} else if (on == GridConstants.GRID_AY) {
+					setPointLocation(idx, points_x[idx], points_y[idx] + value);
+				}
+			}
+		});
+		invalidateBounds();
 	}
 
 	/**
@@ -531,17 +943,17 @@ public class Grid {
 	 * @param factor            Move point this factor
 	 */
 	public void moveRowTo(int row, PVector[] destinationPoints, float factor) {
-		PVector[] opoints = getPointsOfRow(row);
-		assert opoints.length == destinationPoints.length
-				: String.format("Number of points '%d' must be equal to numbber of row points '%d'", opoints.length,
+		assert npointx == destinationPoints.length
+				: String.format("Number of points '%d' must be equal to numbber of row points '%d'", npointx,
 						destinationPoints.length);
 
-		for (int i = 0; i < destinationPoints.length; i++) {
-			PVector dir = PVector.sub(destinationPoints[i], opoints[i]).normalize();
-			dir.mult(factor);
-			PVector aux = PVector.add(opoints[i], dir);
-			movePoint(new PVector(i, row), aux);
-			//
+		beginEdit();
+		try {
+			for (int i = 0; i < destinationPoints.length; i++) {
+				movePointToward(i, row, destinationPoints[i].x, destinationPoints[i].y, factor);
+			}
+		} finally {
+			commit();
 		}
 	}
 
@@ -555,13 +967,34 @@ public class Grid {
 	 *              ({@link ktxo.art.processing.GridConstants#GRID_AY})
 	 */
 	public void moveColumn(int col, float value, int on) {
-		for (int i = 0; i < npointy; i++) {
-			if (on == 0) {
-				points[getIndexFromCoordinates(col, i)].moveX(value);
-			} else if (on == 1) {
-				points[getIndexFromCoordinates(col, i)].moveY(value);
-			}
+		if (vectorized) {
+			forRange(0, npointy, npointy, (from, to) -> {
+				int first = from * npointx + col;
+				if (on == GridConstants.GRID_AX) {
+					GridKernels.offset(points_x, points_x0, first, npointx, to - from, value);
+					GridKernels.rest(points_y, points_y0, first, npointx, to - from);
+				} else if (on == GridConstants.GRID_AY) {
+					GridKernels.rest(points_x, points_x0, first, npointx, to - from);
+					GridKernels.offset(points_y, points_y0, first, npointx, to - from, value);
+				} else {
+					return;
+				}
+				GridKernels.fill(points_amplitude, first, npointx, to - from, Float.NaN);
+			});
+			invalidateBounds();
+			return;
 		}
+		forRange(0, npointy, npointy, (from, to) -> {
+			for (int i = from; i < to; i++) {
+				int idx = getIndexFromCoordinates(col, i);
+				if (on == GridConstants.GRID_AX) {
+					setPointLocation(idx, points_x[idx] + value, points_y[idx]);
+				} else if (on == GridConstants.GRID_AY) {
+					setPointLocation(idx, points_x[idx], points_y[idx] + value);
+				}
+			}
+		});
+		invalidateBounds();
 	}
 
 	/**
@@ -576,16 +1009,17 @@ public class Grid {
 	 * @param factor            Move point this factor
 	 */
 	public void moveColumnTo(int col, PVector[] destinationPoints, float factor) {
-		PVector[] opoints = getPointsOfColumn(col);
-		assert opoints.length == destinationPoints.length
-				: String.format("Number of points '%d' must be equal to number of column points '%d'", opoints.length,
+		assert npointy == destinationPoints.length
+				: String.format("Number of points '%d' must be equal to number of column points '%d'", npointy,
 						destinationPoints.length);
 
-		for (int i = 0; i < destinationPoints.length; i++) {
-			PVector dir = PVector.sub(destinationPoints[i], opoints[i]).normalize();
-			dir.mult(factor);
-			PVector aux = PVector.add(opoints[i], dir);
-			movePoint(new PVector(col, i), aux);
+		beginEdit();
+		try {
+			for (int i = 0; i < destinationPoints.length; i++) {
+				movePointToward(col, i, destinationPoints[i].x, destinationPoints[i].y, factor);
+			}
+		} finally {
+			commit();
 		}
 	}
 
@@ -596,7 +1030,7 @@ public class Grid {
 	 * @return Coordinate of upper left point
 	 */
 	public PVector getPosition() {
-		return points[0].getCenter().copy();
+		return getCoordinatesFromIndex(0);
 	}
 
 	// =========================================================
@@ -606,29 +1040,47 @@ public class Grid {
 	 * @param xCoord X-coordinate of point (from 0 to npointx-1)
 	 * @param yCoord Y-coordinate of point (from 0 to npointy-1)
 	 * 
-	 * @return Coordinate of point
+	 * @return Coordinate of point (a copy, use {@link #movePoint} to change it)
 	 */
 	public PVector getPosFromCoordinates(int xCoord, int yCoord) {
 		assert xCoord < npointx || yCoord < npointy
 				: String.format("Invalid coordinates, values must be: xCoord < %d (npointx) and yCoord < %d (npointy)",
 						npointx, npointy);
-		return points[xCoord + yCoord * npointx].getCenter();
+		return getCoordinatesFromIndex(xCoord + yCoord * npointx);
 	}
 
 	/**
-	 * Helper function to locate a point in internal array {@link #points}
+	 * Build a {@link Point} for one grid point. The point is created on demand
+	 * from grid storage, changes in the returned point are not applied to the grid.
+	 * 
+	 * @param xCoord X-coordinate of point (from 0 to npointx-1)
+	 * @param yCoord Y-coordinate of point (from 0 to npointy-1)
+	 * 
+	 * @return Point
+	 */
+	public Point getPoint(int xCoord, int yCoord) {
+		int idx = getIndexFromCoordinates(xCoord, yCoord);
+		Point p = new Point(parent, getCoordinatesFromIndex(idx), points_color[idx], points_size[idx],
+				points_cap[idx]);
+		p.lock(points_locked.get(idx));
+		p.hide(points_hidden.get(idx));
+		return p;
+	}
+
+	/**
+	 * Helper function to locate a point in internal arrays
 	 * 
 	 * @param x X coordinate
 	 * @param y Y coordinate
 	 * 
 	 * @return Point index
 	 */
-	private int getIndexFromCoordinates(int x, int y) {
+	int getIndexFromCoordinates(int x, int y) {
 		return (x + y * npointx);
 	}
 
 	/**
-	 * Helper function to locate a point in internal array {@link #points}
+	 * Helper function to locate a point in internal arrays
 	 * 
 	 * @param point Point coordinates
 	 * 
@@ -640,32 +1092,243 @@ public class Grid {
 
 	// =========================================================
 	/**
-	 * Return coordinates for point number id in array {@link #points}
+	 * Return coordinates for point number id in internal arrays
 	 * 
 	 * @param id Point number (0 to npoints)
 	 * 
-	 * @return Point coordinates
+	 * @return Point coordinates (a copy)
 	 */
 	private PVector getCoordinatesFromIndex(int idx) {
-		return this.points[idx].getCenter();
+		return new PVector(points_x[idx], points_y[idx]);
+	}
+
+	// =========================================================
+	private void drawSegment(int p0, int p1) {
+		if (!points_hidden.isEmpty() && (points_hidden.get(p0) || points_hidden.get(p1))) {
+			return;
+		}
+		parent.line(draw_x[p0], draw_y[p0], draw_x[p1], draw_y[p1]);
+		if (stats != null) {
+			stats.line_calls++;
+		}
 	}
 
 	// =========================================================
-	private void drawSegment(Point p0, Point p1) {
-		if (p0.isHidden() == true || p1.isHidden() == true) {
+	private void drawPoint(int p) {
+		if (points_hidden.get(p)) {
 			return;
 		}
-		PVector start = p0.getCenter();
-		PVector end = p1.getCenter();
-		parent.line(start.x, start.y, end.x, end.y);
+		parent.stroke(points_color[p]);
+		parent.strokeWeight(points_size[p]);
+		parent.strokeCap(points_cap[p]);
+		parent.point(draw_x[p], draw_y[p]);
+		if (stats != null) {
+			stats.point_calls++;
+			stats.stroke_changes += 3;
+		}
+	}
+
+	// =========================================================
+	/**
+	 * Add vibration to one point, see {@link ktxo.art.processing.Point#vibrate}.
+	 * Current location is calculated from rest location, no objects are allocated.
+	 * Noise amplitude only depends on rest location and vibration value, it is
+	 * cached in {@link #points_amplitude}.
+	 * 
+	 * @param noise Noise source
+	 * @param i     Point index
+	 */
+	private void vibratePoint(NoiseSource noise, int i) {
+		float n = points_amplitude[i];
+		if (n != n) {
+			n = noise.noise(points_x0[i] * vibration_value, points_y0[i] * vibration_value);
+			points_amplitude[i] = n;
+		}
+		// Random keys: one for each frame, point and axis
+		long key = (vibration_frame * npoints + i) << 1;
+		switch (vibration_direction) {
+		case GridConstants.VIBRATE_X:
+			points_x[i] = points_x0[i] + sigNum(noise.random(key)) * n;
+			points_y[i] = points_y0[i];
+			break;
+		case GridConstants.VIBRATE_Y:
+			points_x[i] = points_x0[i];
+			points_y[i] = points_y0[i] + sigNum(noise.random(key + 1)) * n;
+			break;
+		default:
+			points_x[i] = points_x0[i] + sigNum(noise.random(key)) * n;
+			points_y[i] = points_y0[i] + sigNum(noise.random(key + 1)) * n;
+			break;
+		}
+	}
+
+	/**
+	 * Add vibration to all unlocked points, in parallel (row bands) when
+	 * enabled and the noise source can be used from other threads. On mostly
+	 * locked grids only unlocked points are visited and only their tiles are
+	 * marked as moved, list of unlocked points is unordered, so it is only
+	 * used when the noise is keyed by point (source can be copied), sketch
+	 * noise is consumed in index order
+	 */
+	private void vibratePoints() {
+		final NoiseSource noise = vibration_noise;
+		final int nactive = npoints - points_locked.count();
+		final boolean sparse = vibration_keyed && nactive < npoints / 2;
+		if (sparse) {
+			// Mostly locked grid: walk list of unlocked points
+			final int[] active = points_locked.clearList();
+			if (parallel(nactive)) {
+				forRange(0, nactive, nactive, (from, to) -> {
+					NoiseSource n = noise.copy();
+					for (int k = from; k < to; k++) {
+						vibratePoint(n, active[k]);
+					}
+				});
+			} else {
+				for (int k = 0; k < nactive; k++) {
+					vibratePoint(noise, active[k]);
+				}
+			}
+			invalidateLineBounds();
+			for (int k = 0; k < nactive; k++) {
+				tiles.moved(active[k]);
+			}
+		} else if (vibration_keyed && parallel(npoints)) {
+			forEachRow((from, to) -> {
+				NoiseSource n = noise.copy();
+				// Skip locked points
+				for (int i = points_locked.nextClear(from * npointx); i < to * npointx; i = points_locked
+						.nextClear(i + 1)) {
+					vibratePoint(n, i);
+				}
+			});
+		} else {
+			for (int i = points_locked.nextClear(0); i < npoints; i = points_locked.nextClear(i + 1)) {
+				vibratePoint(noise, i);
+			}
+		}
+		if (!sparse) {
+			invalidateBounds();
+		}
+		vibration_frame++;
 	}
 
 	// =========================================================
-	private void drawPoint(Point p) {
-		if (p.isHidden() == true) {
+	/**
+	 * Check if an update of size points must run in parallel
+	 * 
+	 * @param size Number of points to update
+	 * 
+	 * @return True if parallel mode is enabled and size is over threshold
+	 */
+	private boolean parallel(int size) {
+		return parallel_enable && size >= parallel_threshold && parallel_pool.getParallelism() > 1;
+	}
+
+	/**
+	 * Apply an operation to all rows, splitting rows in bands processed in
+	 * parallel when enabled (see {@link #setParallel(boolean, int)})
+	 * 
+	 * @param band Operation
+	 */
+	private void forEachRow(GridTask.Band band) {
+		forRange(0, npointy, npoints, band);
+	}
+
+	/**
+	 * Apply an operation to a range of rows/columns
+	 * 
+	 * @param from First row/column (inclusive)
+	 * @param to   Last row/column (exclusive)
+	 * @param size Number of points in range
+	 * @param band Operation
+	 */
+	private void forRange(int from, int to, int size, GridTask.Band band) {
+		if (!parallel(size) || to - from < 2) {
+			band.apply(from, to);
 			return;
 		}
-		p.draw();
+		int grain = Math.max(1, (to - from) / (parallel_pool.getParallelism() * 4));
+		parallel_pool.invoke(new GridTask(band, from, to, grain));
+	}
+
+	/**
+	 * Enable/disable parallel updates, see {@link #setParallel(boolean, int)}
+	 * 
+	 * @param enable Enable/disable parallel updates
+	 */
+	public void setParallel(boolean enable) {
+		parallel_enable = enable;
+	}
+
+	/**
+	 * Enable/disable parallel updates. Vibration, {@link #shrink},
+	 * {@link #expand}, {@link #moveRow} and {@link #moveColumn} split the grid
+	 * in bands of rows (or columns) processed in a {@link ForkJoinPool}. Grids
+	 * with less points than threshold are updated in the sketch thread.
+	 * 
+	 * Vibration only runs in parallel if the noise source supports it, see
+	 * {@link NoiseSource#copy()}
+	 * 
+	 * @param enable    Enable/disable parallel updates
+	 * @param threshold Min number of points to update in parallel
+	 */
+	public void setParallel(boolean enable, int threshold) {
+		parallel_enable = enable;
+		parallel_threshold = threshold;
+	}
+
+	/**
+	 * Enable/disable vectorized bulk updates (enabled by default).
+	 * {@link #move}, {@link #moveRow}, {@link #moveColumn}, {@link #shrink} and
+	 * {@link #expand} run as loops over contiguous coordinate ranges that the
+	 * JIT compiler turns into SIMD instructions. When disabled points are
+	 * updated one by one (same results), e.g.: to compare both versions
+	 * 
+	 * @param enable Enable/disable vectorized updates
+	 */
+	public void setVectorized(boolean enable) {
+		vectorized = enable;
+	}
+
+	/**
+	 * Check if vectorized bulk updates are enabled, see
+	 * {@link #setVectorized(boolean)}
+	 * 
+	 * @return true if enabled
+	 */
+	public boolean isVectorized() {
+		return vectorized;
+	}
+
+	/**
+	 * Set pool used by parallel updates (default
+	 * {@link ForkJoinPool#commonPool()})
+	 * 
+	 * @param pool Fork-join pool
+	 */
+	public void setParallelPool(ForkJoinPool pool) {
+		parallel_pool = pool;
+	}
+
+	/**
+	 * Check if parallel updates are enabled
+	 * 
+	 * @return Parallel updates status
+	 */
+	public boolean isParallel() {
+		return parallel_enable;
+	}
+
+	// =========================================================
+	private static int sigNum(float val) {
+		if (val > 0) {
+			return 1;
+		} else if (val < 0) {
+			return -1;
+		} else {
+			return 0;
+		}
 	}
 
 	// =========================================================
@@ -681,7 +1344,7 @@ public class Grid {
 	 * 
 	 * @return Point index
 	 */
-	private int getSegmentIndex(int axis, int x, int y) {
+	int getSegmentIndex(int axis, int x, int y) {
 		if (axis == GridConstants.GRID_AX) {
 			return (y * (npointx - 1) + x);
 		} else {
@@ -689,98 +1352,510 @@ public class Grid {
 		}
 	}
 
+	/**
+	 * Get color of a segment style, see {@link GridTopology}
+	 * 
+	 * @param style Style index
+	 * @return Color
+	 */
+	int getSegmentColor(int style) {
+		int nh = topology.nhorizontal;
+		return style < nh ? segment_ax_color[style] : segment_ay_color[style - nh];
+	}
+
+	/**
+	 * Get weight of a segment style, see {@link GridTopology}
+	 * 
+	 * @param style Style index
+	 * @return Weight
+	 */
+	float getSegmentWeight(int style) {
+		int nh = topology.nhorizontal;
+		return style < nh ? segment_ax_weight[style] : segment_ay_weight[style - nh];
+	}
+
 	// =========================================================
-	public void render(boolean enableTranslate) {
+	private void renderRetained() {
+		if (shape == null) {
+			shape = new GridShape(this);
+		}
+		shape.draw();
+		if (stats != null) {
+			stats.line_calls++;
+		}
+	}
+
+	private void renderBatched() {
+		if (batches == null) {
+			batches = new SegmentBatches(this);
+		}
+		batches.draw();
+	}
+
+	/**
+	 * Set render mode. {@link GridConstants#RENDER_RETAINED} requires a P2D/P3D
+	 * renderer (only OpenGL shapes keep a style for each vertex), with other
+	 * renderers the grid is drawn as {@link GridConstants#RENDER_BATCHED}
+	 * 
+	 * @param mode Render mode, {@link GridConstants#RENDER_IMMEDIATE} (default),
+	 *             {@link GridConstants#RENDER_RETAINED} or
+	 *             {@link GridConstants#RENDER_BATCHED}
+	 */
+	public void setRenderMode(int mode) {
+		render_mode = mode;
+		if (mode != GridConstants.RENDER_RETAINED) {
+			shape = null;
+		}
+		if (mode == GridConstants.RENDER_IMMEDIATE) {
+			batches = null;
+		}
+	}
+
+	/**
+	 * Get render mode
+	 * 
+	 * @return Render mode, see {@link #setRenderMode(int)}
+	 */
+	public int getRenderMode() {
+		return render_mode;
+	}
+
+	/**
+	 * Enable level of detail, see {@link #setLevelOfDetail(boolean, float)}
+	 * 
+	 * @param enable true to enable
+	 */
+	public void setLevelOfDetail(boolean enable) {
+		setLevelOfDetail(enable, lod_cell_size);
+	}
+
+	/**
+	 * Enable level of detail for dense grids. When cells on screen (current
+	 * transform included) are smaller than minCellSize pixels, only every k-th
+	 * row and column is drawn, each one as segments joining every k-th point,
+	 * and points smaller than one pixel are skipped. Contour rows and columns
+	 * are always drawn complete.
+	 * 
+	 * Used by {@link GridConstants#RENDER_IMMEDIATE} and
+	 * {@link GridConstants#RENDER_BATCHED} modes.
+	 * 
+	 * @param enable      true to enable
+	 * @param minCellSize Minimum cell size in pixels (default 3)
+	 */
+	public void setLevelOfDetail(boolean enable, float minCellSize) {
+		lod_enable = enable;
+		lod_cell_size = minCellSize;
+		if (enable && lod == null) {
+			lod = new GridLOD(this);
+		}
+	}
+
+	/**
+	 * Check if level of detail is enabled
+	 * 
+	 * @return true if enabled
+	 */
+	public boolean isLevelOfDetail() {
+		return lod_enable;
+	}
+
+	/**
+	 * Enable culling against the sketch viewport, see
+	 * {@link #setCulling(boolean, float)}
+	 * 
+	 * @param enable true to enable
+	 */
+	public void setCulling(boolean enable) {
+		setCulling(enable, 10);
+	}
+
+	/**
+	 * Enable culling: segments, points and cells outside the sketch viewport
+	 * (or the clip rectangle, see {@link #setClip(float, float, float, float)})
+	 * are not drawn. Bounding boxes of each row and column are projected with
+	 * the current transform (screenX/screenY), so whole bands of the grid are
+	 * rejected at once.
+	 * 
+	 * Used by {@link GridConstants#RENDER_IMMEDIATE} mode (and
+	 * {@link GridConstants#RENDER_BATCHED}, where only points are culled and
+	 * segments are skipped when the whole grid is outside).
+	 * 
+	 * @param enable true to enable
+	 * @param margin Extra pixels around the viewport, to keep wide strokes
+	 */
+	public void setCulling(boolean enable, float margin) {
+		cull_enable = enable;
+		if (cull == null) {
+			cull = new GridCulling(this, margin);
+		}
+		cull.setMargin(margin);
+	}
+
+	/**
+	 * Enable culling against a rectangle instead of the sketch viewport, see
+	 * {@link #setCulling(boolean, float)}
+	 * 
+	 * @param x Left (screen coordinates)
+	 * @param y Top (screen coordinates)
+	 * @param w Width
+	 * @param h Height
+	 */
+	public void setClip(float x, float y, float w, float h) {
+		if (!cull_enable) {
+			setCulling(true);
+		}
+		cull.setClip(x, y, w, h);
+	}
+
+	/**
+	 * Cull against the sketch viewport again, see
+	 * {@link #setClip(float, float, float, float)}
+	 */
+	public void noClip() {
+		if (cull != null) {
+			cull.noClip();
+		}
+	}
+
+	/**
+	 * Check if culling is enabled
+	 * 
+	 * @return true if enabled
+	 */
+	public boolean isCulling() {
+		return cull_enable;
+	}
+
+	// =========================================================
+	/**
+	 * Update grid state for a new frame (tweens, vibration). Called by
+	 * {@link #render()}, or by the simulation thread when it is running (see
+	 * {@link #startSimulation(GridUpdater, float)})
+	 */
+	public void update() {
+		update(stats);
+	}
+
+	/**
+	 * Update grid state, see {@link #update()}
+	 * 
+	 * @param stats Statistics to update (null if disabled), the simulation
+	 *              thread keeps its own ones
+	 */
+	void update(GridStats stats) {
+		long t = stats != null ? System.nanoTime() : 0;
+		if (animator != null) {
+			animator.update(1);
+		}
 		if (vibration_enable == true) {
-			for (int i = 0; i < this.points.length; i++) {
-				if (lockedPoints[i] == false) {
-					this.points[i].vibrate(vibration_value, vibration_direction);
+			vibratePoints();
+		}
+		if (stats != null) {
+			stats.update_nanos += System.nanoTime() - t;
+			if (vibration_enable == true) {
+				int vibrated = npoints - points_locked.count();
+				stats.points_vibrated += vibrated;
+				// Rest location copy and noise offset
+				stats.allocations_avoided += 2 * vibrated;
+			}
+		}
+	}
+
+	/**
+	 * Get tween engine of this grid, tweens are advanced one step on each
+	 * {@link #update()}. While simulation is running tweens are advanced by
+	 * the simulation thread: the animator must only be used from the updater
+	 * (see {@link #startSimulation(GridUpdater, float)})
+	 * 
+	 * @return Animator (created on first call)
+	 */
+	public GridAnimator getAnimator() {
+		if (animator == null) {
+			animator = new GridAnimator(this);
+		}
+		return animator;
+	}
+
+	/**
+	 * Select locations to draw: latest frame published by the simulation thread
+	 * when it is running, otherwise update the grid and use current locations
+	 */
+	private void beginFrame() {
+		GridFrame frame = simulation != null ? simulation.acquire(true) : null;
+		if (frame == null) {
+			update();
+			draw_x = points_x;
+			draw_y = points_y;
+		} else {
+			// Frames are drawn without grid bounds and tiles (owned by the
+			// simulation thread), update statistics are collected here
+			draw_x = frame.x;
+			draw_y = frame.y;
+			if (stats != null) {
+				simulation.collectStats(stats);
+			}
+		}
+		if (direct_buffer != null) {
+			syncDirectBuffer(draw_x, draw_y);
+		}
+	}
+
+	/**
+	 * Give simulation frame back once drawn, see {@link GridSimulation}
+	 */
+	private void endFrame() {
+		if (simulation != null) {
+			simulation.release();
+		}
+	}
+
+	// =========================================================
+	public void render(boolean enableTranslate) {
+		beginFrame();
+		try {
+			if (enableTranslate) {
+				// Corners: upper-left (0), upper-right (npointx - 1), bottom-left
+				parent.translate((draw_x[npointx - 1] - draw_x[0]) / 2,
+						(draw_y[npointx * (npointy - 1)] - draw_y[npointx - 1]) / 2);
+			}
+			draw();
+		} finally {
+			endFrame();
+		}
+	}
+
+	/**
+	 * Show grid
+	 * 
+	 */
+	public void render() {
+		beginFrame();
+		try {
+			draw();
+		} finally {
+			endFrame();
+		}
+	}
+
+	private void draw() {
+		// Retained shapes need OpenGL, see setRenderMode()
+		int mode = render_mode == GridConstants.RENDER_RETAINED && !parent.g.isGL() ? GridConstants.RENDER_BATCHED
+				: render_mode;
+		long t = 0;
+		if (stats != null) {
+			stats.frames++;
+			t = System.nanoTime();
+		}
+		culling = cull_enable && mode != GridConstants.RENDER_RETAINED ? cull : null;
+		if (culling != null && !culling.check()) {
+			// Whole grid outside clip rectangle
+			if (stats != null) {
+				stats.culled += npoints;
+				stats.segments_nanos += System.nanoTime() - t;
+			}
+			return;
+		}
+		if (cell_color != null && mode != GridConstants.RENDER_RETAINED) {
+			// Cells under segments and points
+			if (cells == null) {
+				cells = new CellBatches(this);
+			}
+			cells.draw();
+			if (stats != null) {
+				long now = System.nanoTime();
+				stats.fill_nanos += now - t;
+				t = now;
+			}
+		}
+		if (mode == GridConstants.RENDER_RETAINED) {
+			renderRetained();
+			if (stats != null) {
+				stats.segments_nanos += System.nanoTime() - t;
+			}
+			return;
+		}
+		boolean reduced = lod_enable && lod.check(lod_cell_size);
+		if (reduced) {
+			lod.drawSegments();
+		} else if (mode == GridConstants.RENDER_BATCHED) {
+			renderBatched();
+		} else {
+			drawSegments();
+		}
+		if (stats != null) {
+			long now = System.nanoTime();
+			stats.segments_nanos += now - t;
+			t = now;
+		}
+		// Draw point over lines
+		if (reduced) {
+			lod.drawPoints();
+		} else if (mode == GridConstants.RENDER_BATCHED) {
+			if (point_batches == null) {
+				point_batches = new PointBatches(this);
+			}
+			point_batches.draw();
+		} else if (culling != null) {
+			for (int i = 0, p = 0; i < npointy; i++) {
+				for (int j = 0; j < npointx; j++, p++) {
+					if (culling.point(j, i)) {
+						drawPoint(p);
+					} else if (stats != null) {
+						stats.culled++;
+					}
 				}
 			}
+		} else {
+			// Skip hidden points
+			for (int i = points_hidden.nextClear(0); i < npoints; i = points_hidden.nextClear(i + 1)) {
+				drawPoint(i);
+			}
+		}
+		if (stats != null) {
+			stats.points_nanos += System.nanoTime() - t;
+		}
+	}
+
+	private void drawSegments() {
+		int[] segments = topology.segments;
+		int color = 0;
+		float weight = Float.NaN;
+		long strokes = 0;
+		long culled = 0;
+
+		for (int s = 0, k = 0; k < segments.length; s++, k += 3) {
+			int p0 = segments[k];
+			int p1 = segments[k + 1];
+			if (culling != null && !culling.segment(s, p0)) {
+				culled++;
+				continue;
+			}
+			// Stroke only changes between segments with different style
+			int style = segments[k + 2];
+			int c = getSegmentColor(style);
+			float w = getSegmentWeight(style);
+			if (c != color || w != weight) {
+				parent.strokeWeight(w);
+				parent.stroke(c);
+				color = c;
+				weight = w;
+				strokes += 2;
+			}
+			drawSegment(p0, p1);
+		}
+		if (stats != null) {
+			stats.stroke_changes += strokes;
+			stats.culled += culled;
 		}
-		if (enableTranslate) {
-			PVector[] C = getCorners();
-			System.out.println((C[1].x - C[0].x) / 2 + "--" + (C[2].y - C[1].y) / 2);
-			parent.translate((C[1].x - C[0].x) / 2, (C[2].y - C[1].y) / 2);
+	}
+
+	// =========================================================
+	/**
+	 * Start simulation thread. Grid state is updated in a background thread:
+	 * on each step updater is called, then {@link #update()}, and locations
+	 * are published in a {@link GridFrame}. Frames are recycled once drawn
+	 * (steps do not allocate), use {@link #getFrame()} to keep a copy.
+	 * {@link #render()} draws the latest published frame and does not update
+	 * the grid.
+	 * 
+	 * While the simulation is running, points must only be moved from updater,
+	 * and tweens must only be started from updater (see
+	 * {@link #getAnimator()}). Update statistics (see {@link #getStats()}) are
+	 * measured by the simulation thread and added on each render.
+	 * 
+	 * Vibration runs in the simulation thread, so the noise source must support
+	 * other threads (e.g.: {@link #setNoiseSeed(long)}), default source uses
+	 * sketch noise() and random() and can only be used from the sketch thread.
+	 * 
+	 * @param updater Called on each step from the simulation thread (can be null)
+	 * @param rate    Steps per second (greater than 0)
+	 * @throws IllegalArgumentException if rate is not greater than 0
+	 * @throws IllegalStateException    if the noise source can only be used from
+	 *                                  the sketch thread
+	 */
+	public void startSimulation(GridUpdater updater, float rate) {
+		if (!(rate > 0)) {
+			throw new IllegalArgumentException(String.format("Simulation rate '%f' must be greater than 0", rate));
+		}
+		if (!vibration_keyed) {
+			throw new IllegalStateException(
+					"Noise source can only be used from the sketch thread, use setNoiseSeed() or a thread safe NoiseSource");
+		}
+		stopSimulation();
+		simulation = new GridSimulation(this, updater, rate);
+		simulation.start();
+	}
 
+	/**
+	 * Stop simulation thread, see {@link #startSimulation(GridUpdater, float)}
+	 */
+	public void stopSimulation() {
+		if (simulation != null) {
+			simulation.stop();
+			simulation = null;
 		}
-		int id = 0;
+	}
 
-		for (int i = 0; i < npointy; i++) {
-			for (int j = 0; j < npointx - 1; j++) {
-				// Horizontal
-				id = getSegmentIndex(GridConstants.GRID_AX, j, i);
-				parent.strokeWeight(segment_ax_weight[id]);
-				parent.stroke(segment_ax_color[id]);
-				drawSegment(this.points[i * npointx + j], this.points[i * npointx + j + 1]);
-				if (i < npointy - 1) {
-					// Vertical
-					id = getSegmentIndex(GridConstants.GRID_AY, j, i);
-					parent.strokeWeight(segment_ay_weight[id]);
-					parent.stroke(segment_ay_color[id]);
-					drawSegment(this.points[i * npointx + j], this.points[(i + 1) * npointx + j]);
-				}
-				// drawPoint(this.points[i * npointx + j]);
-			}
-			// drawPoint(this.points[i * npointx + npointx - 1]);
-			if (i < npointy - 1) {
-				// Last vertical
-				id = getSegmentIndex(GridConstants.GRID_AY, npointx - 1, i);
-				parent.strokeWeight(segment_ay_weight[id]);
-				parent.stroke(segment_ay_color[id]);
-				drawSegment(this.points[i * npointx + (npointx - 1)], this.points[(i + 1) * npointx + (npointx - 1)]);
-			}
-		}
-		// Draw point over lines
-		for (Point point : points) {
-			drawPoint(point);
-		}
+	/**
+	 * Check if simulation thread is running
+	 * 
+	 * @return Simulation status
+	 */
+	public boolean isSimulating() {
+		return simulation != null;
 	}
 
+	// =========================================================
 	/**
-	 * Show grid
+	 * Enable/disable render statistics (time spent on each render phase, draw
+	 * calls, ...). Statistics are disabled by default, disabled statistics add
+	 * no cost.
 	 * 
+	 * @param enable Enable/disable statistics
 	 */
-	public void render() {
-		if (vibration_enable == true) {
-			for (int i = 0; i < this.points.length; i++) {
-				if (lockedPoints[i] == false) {
-					this.points[i].vibrate(vibration_value, vibration_direction);
-				}
-			}
+	public void enableStats(boolean enable) {
+		if (!enable) {
+			stats = null;
+		} else if (stats == null) {
+			stats = new GridStats();
 		}
-		int id = 0;
+	}
 
-		for (int i = 0; i < npointy; i++) {
-			for (int j = 0; j < npointx - 1; j++) {
-				// Horizontal
-				id = getSegmentIndex(GridConstants.GRID_AX, j, i);
-				parent.strokeWeight(segment_ax_weight[id]);
-				parent.stroke(segment_ax_color[id]);
-				drawSegment(this.points[i * npointx + j], points[i * npointx + j + 1]);
-				if (i < npointy - 1) {
-					// Vertical
-					id = getSegmentIndex(GridConstants.GRID_AY, j, i);
-					parent.strokeWeight(segment_ay_weight[id]);
-					parent.stroke(segment_ay_color[id]);
-					drawSegment(this.points[i * npointx + j], this.points[(i + 1) * npointx + j]);
-				}
-				// drawPoint(this.points[i * npointx + j]);
-			}
-			// drawPoint(this.points[i * npointx + npointx - 1]);
-			if (i < npointy - 1) {
-				// Last vertical
-				id = getSegmentIndex(GridConstants.GRID_AY, npointx - 1, i);
-				parent.strokeWeight(segment_ay_weight[id]);
-				parent.stroke(segment_ay_color[id]);
-				drawSegment(this.points[i * npointx + (npointx - 1)], this.points[(i + 1) * npointx + (npointx - 1)]);
-			}
-		}
-		// Draw point over lines
-		for (Point point : points) {
-			drawPoint(point);
+	/**
+	 * Get render statistics, see {@link #enableStats(boolean)}. Statistics are
+	 * only modified by the sketch thread (render), also while simulation is
+	 * running
+	 * 
+	 * @return Statistics or null if disabled
+	 */
+	public GridStats getStats() {
+		return stats;
+	}
+
+	/**
+	 * Get an immutable snapshot of point locations. When simulation is running
+	 * this is a copy of the latest published frame (simulation frames are
+	 * recycled), otherwise a snapshot of current locations is built.
+	 * 
+	 * @return Point locations
+	 */
+	public GridFrame getFrame() {
+		if (simulation != null) {
+			return simulation.getFrame();
 		}
+		return snapshot(0);
+	}
 
+	/**
+	 * Build an immutable snapshot of current point locations
+	 * 
+	 * @param number Frame number
+	 * 
+	 * @return Point locations
+	 */
+	GridFrame snapshot(long number) {
+		return new GridFrame(npointx, npointy, Arrays.copyOf(points_x, npoints), Arrays.copyOf(points_y, npoints),
+				number);
 	}
 
 	// =========================================================
@@ -791,7 +1866,61 @@ public class Grid {
 	 * @param hide  Hide/no hide this point
 	 */
 	public void hidePoint(PVector point, boolean hide) {
-		this.points[(int) (point.x + point.y * npointy)].hide(hide);
+		points_hidden.set(getIndexFromCoordinates(point), hide);
+		styleChanged();
+	}
+
+	/**
+	 * Hide/Unhide row points
+	 * 
+	 * @param row  Row number, valid values from 0 to npointy-1
+	 * @param hide Hide/no hide these points
+	 */
+	public void hideRow(int row, boolean hide) {
+		points_hidden.set(row * npointx, (row + 1) * npointx, hide);
+		styleChanged();
+	}
+
+	/**
+	 * Hide/Unhide column points
+	 * 
+	 * @param col  Column number, valid values from 0 to npointx-1
+	 * @param hide Hide/no hide these points
+	 */
+	public void hideColumn(int col, boolean hide) {
+		points_hidden.set(col, npointx, npointy, hide);
+		styleChanged();
+	}
+
+	/**
+	 * Hide/Unhide points from (x0,y0) to (x1,y1), both included
+	 * 
+	 * @param x0   X-Coordinate of upper left point (from 0 to npointx-1)
+	 * @param y0   Y-Coordinate of upper left point (from 0 to npointy-1)
+	 * @param x1   X-Coordinate of bottom right point (from 0 to npointx-1)
+	 * @param y1   Y-Coordinate of bottom right point (from 0 to npointy-1)
+	 * @param hide Hide/no hide these points
+	 */
+	public void hideRect(int x0, int y0, int x1, int y1, boolean hide) {
+		setRect(points_hidden, x0, y0, x1, y1, hide);
+		styleChanged();
+	}
+
+	/**
+	 * Check if a point is hidden
+	 * 
+	 * @param x X-Coordinate (from 0 to npointx-1)
+	 * @param y Y-Coordinate (from 0 to npointy-1)
+	 * @return true if hidden
+	 */
+	public boolean isHidden(int x, int y) {
+		return points_hidden.get(getIndexFromCoordinates(x, y));
+	}
+
+	private void setRect(PointMask mask, int x0, int y0, int x1, int y1, boolean value) {
+		for (int i = y0; i <= y1; i++) {
+			mask.set(x0 + i * npointx, x1 + 1 + i * npointx, value);
+		}
 	}
 
 	// =========================================================
@@ -801,7 +1930,7 @@ public class Grid {
 	 * @param point Point coordinates
 	 */
 	public void lockPoint(PVector point) {
-		lockedPoints[(int) (point.x + point.y * npointx)] = true;
+		points_locked.set(getIndexFromCoordinates(point), true);
 	}
 
 	/**
@@ -812,7 +1941,7 @@ public class Grid {
 	 */
 	public void lockPoints(PVector points[]) {
 		for (PVector p : points) {
-			lockedPoints[(int) (p.x + p.y * npointy)] = true;
+			points_locked.set(getIndexFromCoordinates(p), true);
 		}
 	}
 
@@ -822,7 +1951,7 @@ public class Grid {
 	 * @param point Point coordinates
 	 */
 	public void unLockPoint(PVector point) {
-		lockedPoints[(int) (point.x + point.y * npointx)] = false;
+		points_locked.set(getIndexFromCoordinates(point), false);
 	}
 
 	/**
@@ -833,7 +1962,7 @@ public class Grid {
 	 */
 	public void unLockPoints(PVector points[]) {
 		for (PVector p : points) {
-			lockedPoints[(int) (p.x + p.y * npointy)] = false;
+			points_locked.set(getIndexFromCoordinates(p), false);
 		}
 	}
 
@@ -844,9 +1973,7 @@ public class Grid {
 	 * @param row Row number, valid values from 0 to npointy-1
 	 */
 	public void lockRow(int row) {
-		for (int i = 0; i < npointx; i++) {
-			lockedPoints[(i + row * npointx)] = true;
-		}
+		points_locked.set(row * npointx, (row + 1) * npointx, true);
 	}
 
 	/**
@@ -855,9 +1982,7 @@ public class Grid {
 	 * @param col Row number, valid values from 0 to npointy-1
 	 */
 	public void lockColumn(int col) {
-		for (int i = 0; i < npointy; i++) {
-			lockedPoints[(col + npointx * i)] = true;
-		}
+		points_locked.set(col, npointx, npointy, true);
 	}
 
 	/**
@@ -866,9 +1991,7 @@ public class Grid {
 	 * @param row Row number, valid values from 0 to npointy-1
 	 */
 	public void UnLockRow(int row) {
-		for (int i = 0; i < npointx; i++) {
-			lockedPoints[(i + row * npointx)] = false;
-		}
+		points_locked.set(row * npointx, (row + 1) * npointx, false);
 	}
 
 	/**
@@ -877,9 +2000,43 @@ public class Grid {
 	 * @param col Row number, valid values from 0 to npointy-1
 	 */
 	public void UnLockColumn(int col) {
-		for (int i = 0; i < npointy; i++) {
-			lockedPoints[(col + npointx * i)] = false;
-		}
+		points_locked.set(col, npointx, npointy, false);
+	}
+
+	/**
+	 * Lock points from (x0,y0) to (x1,y1), both included (avoid vibration)
+	 * 
+	 * @param x0 X-Coordinate of upper left point (from 0 to npointx-1)
+	 * @param y0 Y-Coordinate of upper left point (from 0 to npointy-1)
+	 * @param x1 X-Coordinate of bottom right point (from 0 to npointx-1)
+	 * @param y1 Y-Coordinate of bottom right point (from 0 to npointy-1)
+	 */
+	public void lockRect(int x0, int y0, int x1, int y1) {
+		setRect(points_locked, x0, y0, x1, y1, true);
+	}
+
+	/**
+	 * Unlock points from (x0,y0) to (x1,y1), both included, see
+	 * {@link #lockRect(int, int, int, int)}
+	 * 
+	 * @param x0 X-Coordinate of upper left point (from 0 to npointx-1)
+	 * @param y0 Y-Coordinate of upper left point (from 0 to npointy-1)
+	 * @param x1 X-Coordinate of bottom right point (from 0 to npointx-1)
+	 * @param y1 Y-Coordinate of bottom right point (from 0 to npointy-1)
+	 */
+	public void unLockRect(int x0, int y0, int x1, int y1) {
+		setRect(points_locked, x0, y0, x1, y1, false);
+	}
+
+	/**
+	 * Check if a point is locked
+	 * 
+	 * @param x X-Coordinate (from 0 to npointx-1)
+	 * @param y Y-Coordinate (from 0 to npointy-1)
+	 * @return true if locked
+	 */
+	public boolean isLocked(int x, int y) {
+		return points_locked.get(getIndexFromCoordinates(x, y));
 	}
 
 	// =========================================================
@@ -888,15 +2045,29 @@ public class Grid {
 	 * 
 	 */
 	public void lockCorners() {
-		lockPoint(new PVector(0, 0));
-		lockPoint(new PVector(npointx - 1, 0));
-		lockPoint(new PVector(npointx - 1, npointy - 1));
-		lockPoint(new PVector(0, npointy - 1));
+		setCorners(points_locked, true);
+	}
+
+	/**
+	 * Unlock corners grid, see {@link #lockCorners()}
+	 */
+	public void unLockCorners() {
+		setCorners(points_locked, false);
+	}
+
+	private void setCorners(PointMask mask, boolean value) {
+		mask.set(0, value);
+		mask.set(npointx - 1, value);
+		mask.set(npoints - npointx, value);
+		mask.set(npoints - 1, value);
 	}
 
 	// =========================================================
 	/**
-	 * Enable/disable vibration in grid points
+	 * Enable/disable vibration in grid points. Vibration is applied on each
+	 * {@link #render()} updating point locations in place (no objects are
+	 * allocated). Noise amplitude of each point is cached, it is calculated again
+	 * only when the point is moved or the vibration value changes
 	 * 
 	 * @param enable    Enable/disable vibration
 	 * @param value     Amount of vibration, see
@@ -908,6 +2079,9 @@ public class Grid {
 	 */
 	public void vibrate(boolean enable, float value, int direction) {
 		vibration_enable = enable;
+		if (value != vibration_value) {
+			invalidateAmplitudes();
+		}
 		vibration_value = value;
 		vibration_direction = direction;
 	}
@@ -925,9 +2099,7 @@ public class Grid {
 	 *                  {@link GridConstants#VIBRATE_ALL}
 	 */
 	public void vibrate(PVector point, boolean enable, float value, int direction) {
-		vibration_enable = enable;
-		vibration_value = value;
-		vibration_direction = direction;
+		vibrate(enable, value, direction);
 	}
 
 	/**
@@ -939,6 +2111,45 @@ public class Grid {
 		vibration_enable = status;
 	}
 
+	/**
+	 * Set source of noise and random values used by vibration. Default source
+	 * uses sketch noise() and random(), use {@link SeededNoise} for reproducible
+	 * vibration
+	 * 
+	 * @param noise Noise source
+	 * @throws IllegalStateException if simulation is running and the source can
+	 *                               only be used from the sketch thread
+	 */
+	public void setNoiseSource(NoiseSource noise) {
+		boolean keyed = noise.copy() != null;
+		if (simulation != null && !keyed) {
+			throw new IllegalStateException("Noise source can only be used from the sketch thread");
+		}
+		vibration_noise = noise;
+		vibration_keyed = keyed;
+		vibration_frame = 0;
+		invalidateAmplitudes();
+	}
+
+	/**
+	 * Use a {@link SeededNoise} with this seed for vibration, see
+	 * {@link #setNoiseSource(NoiseSource)}
+	 * 
+	 * @param seed Seed
+	 */
+	public void setNoiseSeed(long seed) {
+		setNoiseSource(new SeededNoise(seed));
+	}
+
+	/**
+	 * Get source of noise and random values used by vibration
+	 * 
+	 * @return Noise source
+	 */
+	public NoiseSource getNoiseSource() {
+		return vibration_noise;
+	}
+
 	// =========================================================
 	/**
 	 * Shrink grid dimentions
@@ -949,20 +2160,7 @@ public class Grid {
 	 *               ({@link ktxo.art.processing.GridConstants#GRID_AY})
 	 */
 	public void shrink(float factor, int on) {
-		if (on == GridConstants.GRID_AX || on == GridConstants.GRID_ALL) {
-			for (int j = 0; j < npointy; j++) {
-				for (int i = 1; i < npointx; i++) {
-					points[getIndexFromCoordinates(i, j)].getCenter().x -= factor * i;
-				}
-			}
-		}
-		if (on == GridConstants.GRID_AY || on == GridConstants.GRID_ALL) {
-			for (int i = 0; i < npointx; i++) {
-				for (int j = 1; j < npointy; j++) {
-					points[getIndexFromCoordinates(i, j)].getCenter().y -= factor * j;
-				}
-			}
-		}
+		expand(-factor, on);
 	}
 
 	/**
@@ -974,20 +2172,113 @@ public class Grid {
 	 *               ({@link ktxo.art.processing.GridConstants#GRID_AY})
 	 */
 	public void expand(float factor, int on) {
-		if (on == GridConstants.GRID_AX || on == GridConstants.GRID_ALL) {
-			for (int j = 0; j < npointy; j++) {
-				for (int i = 1; i < npointx; i++) {
-					points[getIndexFromCoordinates(i, j)].getCenter().x += factor * i;
-				}
+		boolean ax = on == GridConstants.GRID_AX || on == GridConstants.GRID_ALL;
+		boolean ay = on == GridConstants.GRID_AY || on == GridConstants.GRID_ALL;
+		if (vectorized && ax) {
+			// x offsets are the same for all rows
+			if (kernel_row == null) {
+				kernel_row = new float[npointx];
 			}
+			GridKernels.ramp(kernel_row, npointx, factor);
 		}
-		if (on == GridConstants.GRID_AY || on == GridConstants.GRID_ALL) {
-			for (int i = 0; i < npointx; i++) {
-				for (int j = 1; j < npointy; j++) {
-					points[getIndexFromCoordinates(i, j)].getCenter().y += factor * j;
+		forEachRow((from, to) -> {
+			for (int j = from; j < to; j++) {
+				if (vectorized) {
+					if (ax) {
+						GridKernels.add(points_x, j * npointx, kernel_row, npointx);
+					}
+					if (ay) {
+						GridKernels.add(points_y, j * npointx, (j + 1) * npointx, factor * j);
+					}
+					continue;
+				}
+				for (int i = 0; i < npointx; i++) {
+					int idx = getIndexFromCoordinates(i, j);
+					if (ax) {
+						points_x[idx] += factor * i;
+					}
+					if (ay) {
+						points_y[idx] += factor * j;
+					}
 				}
 			}
-		}
+		});
+		invalidateAmplitudes();
+		invalidateBounds();
+	}
+
+	// =========================================================
+	/**
+	 * Apply an affine transform to all points (current and rest locations),
+	 * e.g.: rotation, scale or shear built with {@link PMatrix2D}
+	 * 
+	 * @param m Transform matrix
+	 */
+	public void applyTransform(PMatrix2D m) {
+		applyTransform(m.m00, m.m01, m.m02, m.m10, m.m11, m.m12);
+	}
+
+	/**
+	 * Apply the xy part of a 3D transform to all points (current and rest
+	 * locations), grid points have z=0 and z result is discarded, see
+	 * {@link #applyTransform(PMatrix2D)}
+	 * 
+	 * @param m Transform matrix
+	 */
+	public void applyTransform(PMatrix3D m) {
+		applyTransform(m.m00, m.m01, m.m03, m.m10, m.m11, m.m13);
+	}
+
+	/**
+	 * Rotate grid around a pivot
+	 * 
+	 * @param angle Angle in radians (clockwise on screen, as
+	 *              {@link PApplet#rotate(float)})
+	 * @param x     Pivot x location
+	 * @param y     Pivot y location
+	 */
+	public void rotate(float angle, float x, float y) {
+		float c = (float) Math.cos(angle);
+		float s = (float) Math.sin(angle);
+		applyTransform(c, -s, x - c * x + s * y, s, c, y - s * x - c * y);
+	}
+
+	/**
+	 * Scale grid around a pivot (pivot does not move)
+	 * 
+	 * @param scale Scale factor for both axis
+	 * @param x     Pivot x location
+	 * @param y     Pivot y location
+	 */
+	public void scale(float scale, float x, float y) {
+		scale(scale, scale, x, y);
+	}
+
+	/**
+	 * Scale grid around a pivot (pivot does not move)
+	 * 
+	 * @param sx X scale factor
+	 * @param sy Y scale factor
+	 * @param x  Pivot x location
+	 * @param y  Pivot y location
+	 */
+	public void scale(float sx, float sy, float x, float y) {
+		applyTransform(sx, 0, x - sx * x, 0, sy, y - sy * y);
+	}
+
+	/**
+	 * Apply x' = a*x + b*y + c, y' = d*x + e*y + f to current and rest
+	 * locations in one pass (row bands in parallel when enabled)
+	 */
+	private void applyTransform(float a, float b, float c, float d, float e, float f) {
+		forEachRow((from, to) -> {
+			GridKernels.transform(points_x, points_y, points_x0, points_y0, from * npointx, to * npointx, a, b, c,
+					d, e, f);
+		});
+		// Vibration amplitude depends on rest location
+		invalidateAmplitudes();
+		invalidateBounds();
+		setSize();
 	}
 
 	// =========================================================
@@ -1028,6 +2319,7 @@ public class Grid {
 			segment_ax_weight[(int) (npointy * point.x + point.x)] = weight;
 			segment_ay_weight[(int) (npointy * point.x + point.x)] = weight;
 		}
+		styleChanged();
 	}
 
 	/**
@@ -1044,6 +2336,7 @@ public class Grid {
 			segment_ay_weight[i] = weight;
 			segment_ay_weight[segment_ay_weight.length - 1 - i] = weight;
 		}
+		styleChanged();
 	}
 
 	/**
@@ -1059,6 +2352,7 @@ public class Grid {
 			id = getSegmentIndex(GridConstants.GRID_AY, col, j);
 			segment_ay_color[id] = color;
 		}
+		styleChanged();
 	}
 
 	/**
@@ -1074,6 +2368,7 @@ public class Grid {
 			id = getSegmentIndex(GridConstants.GRID_AX, i, row);
 			segment_ax_color[id] = color;
 		}
+		styleChanged();
 	}
 
 	/**
@@ -1094,6 +2389,7 @@ public class Grid {
 			segment_ax_color[(int) (npointy * point.x + point.x)] = color;
 			segment_ay_color[(int) (npointy * point.x + point.x)] = color;
 		}
+		styleChanged();
 	}
 
 	/**
@@ -1117,6 +2413,7 @@ public class Grid {
 				segment_ay_weight[id] = weight;
 			}
 		}
+		styleChanged();
 	}
 
 	/**
@@ -1133,6 +2430,7 @@ public class Grid {
 			segment_ay_weight[id] = weight;
 
 		}
+		styleChanged();
 	}
 
 	/**
@@ -1149,6 +2447,7 @@ public class Grid {
 			segment_ax_weight[id] = weight;
 
 		}
+		styleChanged();
 	}
 
 	/**
@@ -1172,6 +2471,7 @@ public class Grid {
 				segment_ay_color[id] = color;
 			}
 		}
+		styleChanged();
 	}
 
 	/**
@@ -1188,6 +2488,7 @@ public class Grid {
 			segment_ay_color[i] = color;
 			segment_ay_color[segment_ay_color.length - 1 - i] = color;
 		}
+		styleChanged();
 	}
 
 	// =========================================================
@@ -1208,9 +2509,8 @@ public class Grid {
 	 */
 	public void setPointCap(int cap) {
 		point_cap = cap;
-		for (int i = 0; i < npoints; i++) {
-			points[i].setCap(point_cap);
-		}
+		Arrays.fill(points_cap, point_cap);
+		styleChanged();
 	}
 
 	/**
@@ -1220,7 +2520,8 @@ public class Grid {
 	 * @param cap Stroke cap. See strokeCap() in {@link processing.core.PApplet} (either SQUARE, PROJECT, or ROUND)
 	 */
 	public void setPointCap(PVector point, int cap) {
-		this.points[getIndexFromCoordinates(point)].setCap(cap);
+		points_cap[getIndexFromCoordinates(point)] = cap;
+		styleChanged();
 	}
 	// =========================================================
 	/**
@@ -1230,9 +2531,8 @@ public class Grid {
 	 */
 	public void setPointColor(int color) {
 		point_color = color;
-		for (int i = 0; i < npoints; i++) {
-			points[i].setColor(point_color);
-		}
+		Arrays.fill(points_color, point_color);
+		styleChanged();
 	}
 
 	/**
@@ -1242,7 +2542,8 @@ public class Grid {
 	 * @param color Point color
 	 */
 	public void setPointColor(PVector point, int color) {
-		this.points[getIndexFromCoordinates(point)].setColor(color);
+		points_color[getIndexFromCoordinates(point)] = color;
+		styleChanged();
 	}
 
 	/**
@@ -1252,9 +2553,8 @@ public class Grid {
 	 */
 	public void setPoinSize(float size) {
 		point_size = size;
-		for (int i = 0; i < npoints; i++) {
-			points[i].setSize(point_size);
-		}
+		Arrays.fill(points_size, point_size);
+		styleChanged();
 	}
 
 	/**
@@ -1264,7 +2564,8 @@ public class Grid {
 	 * @param size  Point size
 	 */
 	public void setPoinSize(PVector point, float size) {
-		this.points[getIndexFromCoordinates(point)].setSize(size);
+		points_size[getIndexFromCoordinates(point)] = size;
+		styleChanged();
 	}
 
 	// =========================================================
@@ -1277,7 +2578,7 @@ public class Grid {
 		PVector p[] = new PVector[npoints];
 
 		for (int i = 0; i < npoints; i++) {
-			p[i] = points[i].getCenter().copy();
+			p[i] = getCoordinatesFromIndex(i);
 		}
 		return p;
 	}
@@ -1293,7 +2594,7 @@ public class Grid {
 		PVector p[] = new PVector[npointy];
 
 		for (int i = 0; i < npointy; i++) {
-			p[i] = getPosFromCoordinates(col, i).copy();
+			p[i] = getPosFromCoordinates(col, i);
 		}
 		return p;
 	}
@@ -1308,12 +2609,193 @@ public class Grid {
 	public PVector[] getPointsOfRow(int row) {
 		PVector p[] = new PVector[npointx];
 
-		for (int i = 0; i < npointy; i++) {
-			p[i] = getPosFromCoordinates(i, row).copy();
+		for (int i = 0; i < npointx; i++) {
+			p[i] = getPosFromCoordinates(i, row);
 		}
 		return p;
 	}
 
+	/**
+	 * Copy location of all grid points into an array: [x0, y0, x1, y1, ...],
+	 * row by row. No objects are created when dest has room for all points.
+	 * 
+	 * @param dest Destination array, length at least 2*number of points (if null
+	 *             or smaller a new array is created)
+	 * @return dest or the new array
+	 */
+	public float[] getPoints(float[] dest) {
+		if (dest == null || dest.length < 2 * npoints) {
+			dest = new float[2 * npoints];
+		}
+		for (int i = 0, k = 0; i < npoints; i++) {
+			dest[k++] = points_x[i];
+			dest[k++] = points_y[i];
+		}
+		return dest;
+	}
+
+	/**
+	 * Copy location of all points from one column into an array: [x0, y0, x1,
+	 * y1, ...]. See {@link #getPoints(float[])}
+	 * 
+	 * @param col  Column number (from 0 to npointx-1)
+	 * @param dest Destination array, length at least 2*npointy (if null or
+	 *             smaller a new array is created)
+	 * @return dest or the new array
+	 */
+	public float[] getPointsOfColumn(int col, float[] dest) {
+		if (dest == null || dest.length < 2 * npointy) {
+			dest = new float[2 * npointy];
+		}
+		for (int i = 0, k = 0, idx = col; i < npointy; i++, idx += npointx) {
+			dest[k++] = points_x[idx];
+			dest[k++] = points_y[idx];
+		}
+		return dest;
+	}
+
+	/**
+	 * Copy location of all points from one row into an array: [x0, y0, x1, y1,
+	 * ...]. See {@link #getPoints(float[])}
+	 * 
+	 * @param row  Row number (from 0 to npointy-1)
+	 * @param dest Destination array, length at least 2*npointx (if null or
+	 *             smaller a new array is created)
+	 * @return dest or the new array
+	 */
+	public float[] getPointsOfRow(int row, float[] dest) {
+		if (dest == null || dest.length < 2 * npointx) {
+			dest = new float[2 * npointx];
+		}
+		for (int i = 0, k = 0, idx = row * npointx; i < npointx; i++, idx++) {
+			dest[k++] = points_x[idx];
+			dest[k++] = points_y[idx];
+		}
+		return dest;
+	}
+
+	/**
+	 * Write location of all grid points into a buffer (x0, y0, x1, y1, ...),
+	 * starting at its current position, row by row. Buffer position is
+	 * advanced 2*number of points.
+	 * 
+	 * @param dest Destination buffer (direct buffers can be passed to native
+	 *             code / OpenGL)
+	 * @return dest
+	 */
+	public FloatBuffer getPoints(FloatBuffer dest) {
+		for (int i = 0; i < npoints; i++) {
+			dest.put(points_x[i]).put(points_y[i]);
+		}
+		return dest;
+	}
+
+	/**
+	 * Get a read-only view of x-coordinates of all grid points (index:
+	 * col+row*npointx). No data is copied, the view always shows current
+	 * locations.
+	 * 
+	 * @return x-coordinates
+	 */
+	public FloatBuffer getPointsX() {
+		return FloatBuffer.wrap(points_x).asReadOnlyBuffer();
+	}
+
+	/**
+	 * Get a read-only view of y-coordinates of all grid points, see
+	 * {@link #getPointsX()}
+	 * 
+	 * @return y-coordinates
+	 */
+	public FloatBuffer getPointsY() {
+		return FloatBuffer.wrap(points_y).asReadOnlyBuffer();
+	}
+
+	// =========================================================
+	/**
+	 * Enable/disable a copy of point locations in a direct buffer (native byte
+	 * order: x0, y0, x1, y1, ..., row by row), see {@link #getPointsBuffer()}.
+	 * The buffer is updated on each render, only tiles with moved points are
+	 * copied, so locations can be uploaded to OpenGL (PGL) or passed to native
+	 * code without copies or objects for each point.
+	 * 
+	 * @param enable Enable/disable direct buffer
+	 */
+	public void setDirectBuffer(boolean enable) {
+		if (!enable) {
+			direct_buffer = null;
+			direct_source = null;
+		} else if (direct_buffer == null) {
+			direct_buffer = ByteBuffer.allocateDirect(2 * npoints * Float.BYTES).order(ByteOrder.nativeOrder())
+					.asFloatBuffer();
+		}
+	}
+
+	/**
+	 * Check if locations are copied in a direct buffer, see
+	 * {@link #setDirectBuffer(boolean)}
+	 * 
+	 * @return true if enabled
+	 */
+	public boolean isDirectBuffer() {
+		return direct_buffer != null;
+	}
+
+	/**
+	 * Get a read-only view of the direct buffer with point locations (x0, y0,
+	 * x1, y1, ..., index: 2*(col+row*npointx)), see
+	 * {@link #setDirectBuffer(boolean)}. The view keeps showing the buffer
+	 * contents: locations drawn by last render (latest frame while simulation
+	 * is running), or current locations when simulation is not running (they
+	 * are copied by this call).
+	 * 
+	 * @return Direct buffer, null if disabled
+	 */
+	public FloatBuffer getPointsBuffer() {
+		if (direct_buffer == null) {
+			return null;
+		}
+		if (simulation == null) {
+			syncDirectBuffer(points_x, points_y);
+		}
+		return direct_buffer.asReadOnlyBuffer();
+	}
+
+	/**
+	 * Copy locations into direct buffer: all of them for a simulation frame
+	 * (frames are recycled, same array can hold new locations) or a new array,
+	 * otherwise only tiles changed since last copy
+	 */
+	private void syncDirectBuffer(float[] x, float[] y) {
+		FloatBuffer b = direct_buffer;
+		if (x != direct_source || x != points_x) {
+			for (int i = 0, k = 0; i < npoints; i++, k += 2) {
+				b.put(k, x[i]);
+				b.put(k + 1, y[i]);
+			}
+			direct_source = x;
+			direct_version = tiles.version();
+			return;
+		}
+		if (!tiles.changedSince(direct_version)) {
+			return;
+		}
+		for (int t = 0; t < tiles.ntiles; t++) {
+			if (!tiles.changedSince(t, direct_version)) {
+				continue;
+			}
+			int j0 = tiles.column0(t % tiles.ntilex);
+			int j1 = tiles.column1(t % tiles.ntilex);
+			for (int i = tiles.row0(t / tiles.ntilex), i1 = tiles.row1(t / tiles.ntilex); i <= i1; i++) {
+				for (int p = i * npointx + j0, end = i * npointx + j1; p <= end; p++) {
+					b.put(2 * p, x[p]);
+					b.put(2 * p + 1, y[p]);
+				}
+			}
+		}
+		direct_version = tiles.version();
+	}
+
 	/**
 	 * Get number of columns
 	 * 
@@ -1341,6 +2823,37 @@ public class Grid {
 		return npointx * npointy;
 	}
 
+	/**
+	 * Get number of segments
+	 * 
+	 * @return Number of segments
+	 */
+	public int getNumOfSegments() {
+		return topology.nsegments;
+	}
+
+	/**
+	 * Copy segment endpoints into an array: [a0, b0, a1, b1, ...], where a and b
+	 * are point indexes (col+row*npointx). Horizontal segments come first, row
+	 * by row, then vertical segments, column by column.
+	 * 
+	 * @param dest Destination array, length at least 2*number of segments (if
+	 *             null or smaller a new array is created)
+	 * @return dest or the new array
+	 */
+	public int[] getSegments(int[] dest) {
+		int n = topology.nsegments;
+		if (dest == null || dest.length < 2 * n) {
+			dest = new int[2 * n];
+		}
+		int[] segments = topology.segments;
+		for (int s = 0, k = 0; s < n; s++, k += 3) {
+			dest[2 * s] = segments[k];
+			dest[2 * s + 1] = segments[k + 1];
+		}
+		return dest;
+	}
+
 	/**
 	 * Get grid size, grid size is calculated using corners:
 	 * 
@@ -1360,33 +2873,38 @@ public class Grid {
 	}
 
 	/**
-	 * Get max x-coordinate
+	 * Get max x-coordinate of last column
 	 * 
 	 * @return Max x-coordinate
 	 */
 	public float getMaxX() {
-		float max = 0;
-		for (int i = 0; i < npointy; i++) {
-			if (this.points[getIndexFromCoordinates(npointx - 1, i)].getCenter().x > max) {
-				max = this.points[getIndexFromCoordinates(npointx - 1, i)].getCenter().x;
-			}
-		}
-		return max;
+		Bounds b = bounds_columns[npointx - 1];
+		b.check(points_x, points_y);
+		return b.max_x;
 	}
 
 	/**
-	 * Get max y-coordinate
+	 * Get max y-coordinate of last row
 	 * 
 	 * @return Max y-coordinate
 	 */
 	public float getMaxY() {
-		float max = 0;
-		for (int i = 0; i < npointx; i++) {
-			if (this.points[getIndexFromCoordinates(i, npointy - 1)].getCenter().y > max) {
-				max = this.points[getIndexFromCoordinates(i, npointy - 1)].getCenter().y;
-			}
-		}
-		return max;
+		Bounds b = bounds_rows[npointy - 1];
+		b.check(points_x, points_y);
+		return b.max_y;
+	}
+
+	/**
+	 * Get bounding box of all grid points. The box is updated when points move,
+	 * all points are only checked again after bulk changes (vibration, expand,
+	 * ...) or when an extreme point moves inward.
+	 * 
+	 * @return Bounding box: [min x, min y, max x, max y]
+	 */
+	public float[] getBounds() {
+		bounds.check(points_x, points_y);
+		float[] b = { bounds.min_x, bounds.min_y, bounds.max_x, bounds.max_y };
+		return b;
 	}
 
 	// =========================================================
@@ -1409,8 +2927,8 @@ public class Grid {
 		sbf.append(" maxXY=(" + getMaxX() + "," + getMaxY() + ") ");
 		if (includePoint) {
 			sbf.append("\n");
-			for (int i = 0; i < this.points.length; i++) {
-				sbf.append(i + " : (" + this.points[i].getCenter().x + "," + this.points[i].getCenter().y + ")\n");
+			for (int i = 0; i < npoints; i++) {
+				sbf.append(i + " : (" + points_x[i] + "," + points_y[i] + ")\n");
 			}
 		}
 		System.out.println(sbf.toString());
@@ -0,0 +1,550 @@
+package ktxo.art.processing;
+
+import java.util.Arrays;
+import processing.core.PApplet;
+import processing.core.PVector;
+
+/**
+ * Tween engine for {@link ktxo.art.processing.Grid}, see
+ * {@link Grid#getAnimator()}.
+ *
+ * A tween moves a point, a row, a column or the whole grid to target
+ * locations:
+ * <ul>
+ * <li>tween*: in a number of steps following an easing curve (see
+ * {@link GridConstants#EASE_LINEAR}, ...)</li>
+ * <li>follow*: a fixed distance each step, like
+ * {@link Grid#moveRowTo(int, PVector[], float)} but stopping at target</li>
+ * </ul>
+ *
+ * All active tweens are advanced in one pass by {@link #update(float)}
+ * (called by {@link Grid#update()}, once per frame) without allocating
+ * memory. Each tween keeps its residual (sum of distances from points to
+ * targets) while moving its points and completes when it is not greater than
+ * tolerance (see {@link #setTolerance(float)}), then its listener is called.
+ *
+ * If several tweens move the same point, last scheduled one wins.
+ *
+ * <pre>
+ * int t = grid.getAnimator().tweenRow(0, targets, 60, GridConstants.EASE_IN_OUT);
+ * grid.getAnimator().onComplete(t, new GridTweenListener() {
+ *   public void tweenCompleted(Grid grid, int tween) {
+ *     ...
+ *   }
+ * });
+ * </pre>
+ *
+ * @author ktxo.art@gmail.com
+ *
+ */
+public class GridAnimator {
+	private final Grid grid;
+	private int next_id = 1;
+	private float tolerance = 0;
+
+	// Active tweens
+	private int ntweens = 0;
+	private int[] tween_id = new int[8];
+	// Slots of the tween: tween_first .. tween_first+tween_count-1
+	private int[] tween_first = new int[8];
+	private int[] tween_count = new int[8];
+	private int[] tween_easing = new int[8];
+	// Steps (tween*) or distance for each step (follow*)
+	private float[] tween_duration = new float[8];
+	private float[] tween_factor = new float[8];
+	private float[] tween_elapsed = new float[8];
+	private float[] tween_residual = new float[8];
+	private GridTweenListener[] tween_listener = new GridTweenListener[8];
+
+	// Point moved by each slot, from and target location
+	private int nslots = 0;
+	private int[] slot_point = new int[64];
+	private float[] slot_fx = new float[64];
+	private float[] slot_fy = new float[64];
+	private float[] slot_tx = new float[64];
+	private float[] slot_ty = new float[64];
+
+	// Tweens completed on last update
+	private int[] done_id = new int[8];
+	private GridTweenListener[] done_listener = new GridTweenListener[8];
+
+	// =========================================================
+	/**
+	 * Constructor
+	 *
+	 * @param grid Grid to animate
+	 */
+	GridAnimator(Grid grid) {
+		this.grid = grid;
+	}
+
+	// =========================================================
+	/**
+	 * Move a grid point to (x2,y2) in duration steps
+	 *
+	 * @param x1       X-Coordinate (from 0 to npointx-1)
+	 * @param y1       Y-Coordinate (from 0 to npointy-1)
+	 * @param x2       X location in screen
+	 * @param y2       Y location in screen
+	 * @param duration Number of steps (frames)
+	 * @param easing   Easing, {@link GridConstants#EASE_LINEAR}, ...
+	 * @return Tween id
+	 */
+	public int tweenPoint(int x1, int y1, float x2, float y2, float duration, int easing) {
+		int t = add(1, duration, easing, 0);
+		target(tween_first[t], grid.getIndexFromCoordinates(x1, y1), x2, y2);
+		return start(t);
+	}
+
+	/**
+	 * Move points of a row to destinationPoints in duration steps
+	 *
+	 * @param row               Row (from 0 to npointy-1)
+	 * @param destinationPoints Target locations (length must be npointx)
+	 * @param duration          Number of steps (frames)
+	 * @param easing            Easing, {@link GridConstants#EASE_LINEAR}, ...
+	 * @return Tween id
+	 */
+	public int tweenRow(int row, PVector[] destinationPoints, float duration, int easing) {
+		return row(row, destinationPoints, duration, easing, 0);
+	}
+
+	/**
+	 * Move points of a column to destinationPoints in duration steps
+	 *
+	 * @param col               Column (from 0 to npointx-1)
+	 * @param destinationPoints Target locations (length must be npointy)
+	 * @param duration          Number of steps (frames)
+	 * @param easing            Easing, {@link GridConstants#EASE_LINEAR}, ...
+	 * @return Tween id
+	 */
+	public int tweenColumn(int col, PVector[] destinationPoints, float duration, int easing) {
+		return column(col, destinationPoints, duration, easing, 0);
+	}
+
+	/**
+	 * Move all points to destinationPoints in duration steps
+	 *
+	 * @param destinationPoints Target locations, row by row (length must be
+	 *                          number of points)
+	 * @param duration          Number of steps (frames)
+	 * @param easing            Easing, {@link GridConstants#EASE_LINEAR}, ...
+	 * @return Tween id
+	 */
+	public int tweenGrid(PVector[] destinationPoints, float duration, int easing) {
+		return all(destinationPoints, duration, easing, 0);
+	}
+
+	/**
+	 * Move all points to the location of points of other grid (same size) in
+	 * duration steps
+	 *
+	 * @param target   Grid with target locations
+	 * @param duration Number of steps (frames)
+	 * @param easing   Easing, {@link GridConstants#EASE_LINEAR}, ...
+	 * @return Tween id
+	 */
+	public int tweenGrid(Grid target, float duration, int easing) {
+		assert grid.npoints == target.npoints
+				: String.format("Number of points '%d' must be equal to number of grid points '%d'", target.npoints,
+						grid.npoints);
+
+		int t = add(grid.npoints, duration, easing, 0);
+		int s = tween_first[t];
+		for (int i = 0; i < grid.npoints; i++) {
+			target(s++, i, target.points_x0[i], target.points_y0[i]);
+		}
+		return start(t);
+	}
+
+	// =========================================================
+	/**
+	 * Move a grid point to (x2,y2), factor units each step
+	 *
+	 * @param x1     X-Coordinate (from 0 to npointx-1)
+	 * @param y1     Y-Coordinate (from 0 to npointy-1)
+	 * @param x2     X location in screen
+	 * @param y2     Y location in screen
+	 * @param factor Distance moved each step
+	 * @return Tween id
+	 */
+	public int followPoint(int x1, int y1, float x2, float y2, float factor) {
+		int t = add(1, 0, GridConstants.EASE_LINEAR, factor);
+		target(tween_first[t], grid.getIndexFromCoordinates(x1, y1), x2, y2);
+		return start(t);
+	}
+
+	/**
+	 * Move points of a row to destinationPoints, factor units each step
+	 *
+	 * @param row               Row (from 0 to npointy-1)
+	 * @param destinationPoints Target locations (length must be npointx)
+	 * @param factor            Distance moved each step
+	 * @return Tween id
+	 */
+	public int followRow(int row, PVector[] destinationPoints, float factor) {
+		return row(row, destinationPoints, 0, GridConstants.EASE_LINEAR, factor);
+	}
+
+	/**
+	 * Move points of a column to destinationPoints, factor units each step
+	 *
+	 * @param col               Column (from 0 to npointx-1)
+	 * @param destinationPoints Target locations (length must be npointy)
+	 * @param factor            Distance moved each step
+	 * @return Tween id
+	 */
+	public int followColumn(int col, PVector[] destinationPoints, float factor) {
+		return column(col, destinationPoints, 0, GridConstants.EASE_LINEAR, factor);
+	}
+
+	/**
+	 * Move all points to destinationPoints, factor units each step
+	 *
+	 * @param destinationPoints Target locations, row by row (length must be
+	 *                          number of points)
+	 * @param factor            Distance moved each step
+	 * @return Tween id
+	 */
+	public int followGrid(PVector[] destinationPoints, float factor) {
+		return all(destinationPoints, 0, GridConstants.EASE_LINEAR, factor);
+	}
+
+	// =========================================================
+	private int row(int row, PVector[] destinationPoints, float duration, int easing, float factor) {
+		assert grid.npointx == destinationPoints.length
+				: String.format("Number of points '%d' must be equal to number of row points '%d'", grid.npointx,
+						destinationPoints.length);
+
+		int t = add(destinationPoints.length, duration, easing, factor);
+		int s = tween_first[t];
+		for (int i = 0; i < destinationPoints.length; i++) {
+			target(s++, grid.getIndexFromCoordinates(i, row), destinationPoints[i].x, destinationPoints[i].y);
+		}
+		return start(t);
+	}
+
+	private int column(int col, PVector[] destinationPoints, float duration, int easing, float factor) {
+		assert grid.npointy == destinationPoints.length
+				: String.format("Number of points '%d' must be equal to number of column points '%d'", grid.npointy,
+						destinationPoints.length);
+
+		int t = add(destinationPoints.length, duration, easing, factor);
+		int s = tween_first[t];
+		for (int i = 0; i < destinationPoints.length; i++) {
+			target(s++, grid.getIndexFromCoordinates(col, i), destinationPoints[i].x, destinationPoints[i].y);
+		}
+		return start(t);
+	}
+
+	private int all(PVector[] destinationPoints, float duration, int easing, float factor) {
+		assert grid.npoints == destinationPoints.length
+				: String.format("Number of points '%d' must be equal to number of grid points '%d'",
+						destinationPoints.length, grid.npoints);
+
+		int t = add(destinationPoints.length, duration, easing, factor);
+		int s = tween_first[t];
+		for (int i = 0; i < destinationPoints.length; i++) {
+			target(s++, i, destinationPoints[i].x, destinationPoints[i].y);
+		}
+		return start(t);
+	}
+
+	/**
+	 * Add a tween with count slots, return tween index
+	 */
+	private int add(int count, float duration, int easing, float factor) {
+		if (ntweens == tween_id.length) {
+			int n = ntweens * 2;
+			tween_id = Arrays.copyOf(tween_id, n);
+			tween_first = Arrays.copyOf(tween_first, n);
+			tween_count = Arrays.copyOf(tween_count, n);
+			tween_easing = Arrays.copyOf(tween_easing, n);
+			tween_duration = Arrays.copyOf(tween_duration, n);
+			tween_factor = Arrays.copyOf(tween_factor, n);
+			tween_elapsed = Arrays.copyOf(tween_elapsed, n);
+			tween_residual = Arrays.copyOf(tween_residual, n);
+			tween_listener = Arrays.copyOf(tween_listener, n);
+			done_id = Arrays.copyOf(done_id, n);
+			done_listener = Arrays.copyOf(done_listener, n);
+		}
+		if (nslots + count > slot_point.length) {
+			int n = Math.max(slot_point.length * 2, nslots + count);
+			slot_point = Arrays.copyOf(slot_point, n);
+			slot_fx = Arrays.copyOf(slot_fx, n);
+			slot_fy = Arrays.copyOf(slot_fy, n);
+			slot_tx = Arrays.copyOf(slot_tx, n);
+			slot_ty = Arrays.copyOf(slot_ty, n);
+		}
+		int t = ntweens++;
+		tween_id[t] = next_id++;
+		tween_first[t] = nslots;
+		tween_count[t] = count;
+		tween_easing[t] = easing;
+		tween_duration[t] = duration;
+		tween_factor[t] = factor;
+		tween_elapsed[t] = 0;
+		tween_residual[t] = 0;
+		tween_listener[t] = null;
+		nslots += count;
+		return t;
+	}
+
+	private void target(int s, int idx, float x, float y) {
+		slot_point[s] = idx;
+		slot_fx[s] = grid.points_x0[idx];
+		slot_fy[s] = grid.points_y0[idx];
+		slot_tx[s] = x;
+		slot_ty[s] = y;
+	}
+
+	private int start(int t) {
+		float residual = 0;
+		for (int s = tween_first[t], end = s + tween_count[t]; s < end; s++) {
+			residual += PApplet.dist(slot_fx[s], slot_fy[s], slot_tx[s], slot_ty[s]);
+		}
+		tween_residual[t] = residual;
+		return tween_id[t];
+	}
+
+	// =========================================================
+	/**
+	 * Advance all tweens one step, see {@link #update(float)}
+	 */
+	public void update() {
+		update(1);
+	}
+
+	/**
+	 * Advance all tweens, move their points and call listeners of completed
+	 * tweens. Called by {@link Grid#update()} with one step for each frame.
+	 *
+	 * @param steps Number of steps (frames), can be fractional
+	 */
+	public void update(float steps) {
+		if (ntweens == 0) {
+			return;
+		}
+		float[] x0 = grid.points_x0;
+		float[] y0 = grid.points_y0;
+		int ndone = 0;
+		int w = 0;
+		int ws = 0;
+		grid.beginEdit();
+		try {
+			for (int t = 0; t < ntweens; t++) {
+				int first = tween_first[t];
+				int count = tween_count[t];
+				int end = first + count;
+				float residual = 0;
+				if (tween_factor[t] > 0) {
+					// Fixed distance, stop at target
+					float factor = tween_factor[t] * steps;
+					for (int s = first; s < end; s++) {
+						int i = slot_point[s];
+						float dx = slot_tx[s] - x0[i];
+						float dy = slot_ty[s] - y0[i];
+						float len = (float) Math.sqrt(dx * dx + dy * dy);
+						if (len <= factor) {
+							grid.movePointLocation(i, slot_tx[s], slot_ty[s]);
+						} else {
+							grid.movePointLocation(i, x0[i] + dx * factor / len, y0[i] + dy * factor / len);
+							residual += len - factor;
+						}
+					}
+				} else {
+					// Easing from start location
+					float elapsed = tween_elapsed[t] += steps;
+					float k = elapsed >= tween_duration[t] ? 1 : ease(tween_easing[t], elapsed / tween_duration[t]);
+					for (int s = first; s < end; s++) {
+						if (k >= 1) {
+							grid.movePointLocation(slot_point[s], slot_tx[s], slot_ty[s]);
+							continue;
+						}
+						float dx = slot_tx[s] - slot_fx[s];
+						float dy = slot_ty[s] - slot_fy[s];
+						grid.movePointLocation(slot_point[s], slot_fx[s] + dx * k, slot_fy[s] + dy * k);
+						residual += (1 - k) * (float) Math.sqrt(dx * dx + dy * dy);
+					}
+				}
+				tween_residual[t] = residual;
+				if (residual <= tolerance) {
+					done_id[ndone] = tween_id[t];
+					done_listener[ndone++] = tween_listener[t];
+					continue;
+				}
+				// Keep tween, compact arrays
+				if (ws != first) {
+					System.arraycopy(slot_point, first, slot_point, ws, count);
+					System.arraycopy(slot_fx, first, slot_fx, ws, count);
+					System.arraycopy(slot_fy, first, slot_fy, ws, count);
+					System.arraycopy(slot_tx, first, slot_tx, ws, count);
+					System.arraycopy(slot_ty, first, slot_ty, ws, count);
+				}
+				if (w != t) {
+					copy(t, w);
+				}
+				tween_first[w++] = ws;
+				ws += count;
+			}
+		} finally {
+			grid.commit();
+		}
+		Arrays.fill(tween_listener, w, ntweens, null);
+		ntweens = w;
+		nslots = ws;
+
+		for (int k = 0; k < ndone; k++) {
+			GridTweenListener listener = done_listener[k];
+			done_listener[k] = null;
+			if (listener != null) {
+				listener.tweenCompleted(grid, done_id[k]);
+			}
+		}
+	}
+
+	private void copy(int from, int to) {
+		tween_id[to] = tween_id[from];
+		tween_count[to] = tween_count[from];
+		tween_easing[to] = tween_easing[from];
+		tween_duration[to] = tween_duration[from];
+		tween_factor[to] = tween_factor[from];
+		tween_elapsed[to] = tween_elapsed[from];
+		tween_residual[to] = tween_residual[from];
+		tween_listener[to] = tween_listener[from];
+	}
+
+	// =========================================================
+	/**
+	 * Easing curve
+	 *
+	 * @param easing Easing, {@link GridConstants#EASE_LINEAR}, ...
+	 * @param t      Time (from 0 to 1)
+	 * @return Progress (0 at t=0, 1 at t=1)
+	 */
+	public static float ease(int easing, float t) {
+		switch (easing) {
+		case GridConstants.EASE_IN:
+			return t * t;
+		case GridConstants.EASE_OUT:
+			return t * (2 - t);
+		case GridConstants.EASE_IN_OUT:
+			return t < 0.5F ? 2 * t * t : -1 + (4 - 2 * t) * t;
+		case GridConstants.EASE_IN_OUT_CUBIC:
+			return t < 0.5F ? 4 * t * t * t : (t - 1) * (2 * t - 2) * (2 * t - 2) + 1;
+		case GridConstants.EASE_IN_OUT_SINE:
+			return (1 - (float) Math.cos(Math.PI * t)) / 2;
+		default:
+			return t;
+		}
+	}
+
+	// =========================================================
+	/**
+	 * Set listener called when tween completes
+	 *
+	 * @param tween    Tween id
+	 * @param listener Listener (null to remove)
+	 */
+	public void onComplete(int tween, GridTweenListener listener) {
+		int t = indexOf(tween);
+		if (t >= 0) {
+			tween_listener[t] = listener;
+		}
+	}
+
+	/**
+	 * Stop a tween, points stay at their current location and listener is not
+	 * called
+	 *
+	 * @param tween Tween id
+	 */
+	public void cancel(int tween) {
+		int t = indexOf(tween);
+		if (t < 0) {
+			return;
+		}
+		int first = tween_first[t];
+		int count = tween_count[t];
+		int n = nslots - first - count;
+		System.arraycopy(slot_point, first + count, slot_point, first, n);
+		System.arraycopy(slot_fx, first + count, slot_fx, first, n);
+		System.arraycopy(slot_fy, first + count, slot_fy, first, n);
+		System.arraycopy(slot_tx, first + count, slot_tx, first, n);
+		System.arraycopy(slot_ty, first + count, slot_ty, first, n);
+		nslots -= count;
+		for (int k = t + 1; k < ntweens; k++) {
+			copy(k, k - 1);
+			tween_first[k - 1] = tween_first[k] - count;
+		}
+		tween_listener[--ntweens] = null;
+	}
+
+	/**
+	 * Stop all tweens, see {@link #cancel(int)}
+	 */
+	public void cancelAll() {
+		Arrays.fill(tween_listener, 0, ntweens, null);
+		ntweens = 0;
+		nslots = 0;
+	}
+
+	/**
+	 * Check if tween is running
+	 *
+	 * @param tween Tween id
+	 * @return true if tween has not completed or been cancelled
+	 */
+	public boolean isActive(int tween) {
+		return indexOf(tween) >= 0;
+	}
+
+	/**
+	 * Get residual of a tween: sum of distances from its points to their
+	 * targets, updated on each step
+	 *
+	 * @param tween Tween id
+	 * @return Residual (0 if tween is not active)
+	 */
+	public float getResidual(int tween) {
+		int t = indexOf(tween);
+		return t < 0 ? 0 : tween_residual[t];
+	}
+
+	/**
+	 * Get number of running tweens
+	 *
+	 * @return Number of tweens
+	 */
+	public int getActiveCount() {
+		return ntweens;
+	}
+
+	/**
+	 * Set residual under which a tween is completed (default 0, points reach
+	 * their targets)
+	 *
+	 * @param tolerance Sum of distances from points to targets
+	 */
+	public void setTolerance(float tolerance) {
+		this.tolerance = tolerance;
+	}
+
+	/**
+	 * Get tolerance, see {@link #setTolerance(float)}
+	 *
+	 * @return Tolerance
+	 */
+	public float getTolerance() {
+		return tolerance;
+	}
+
+	private int indexOf(int tween) {
+		for (int t = 0; t < ntweens; t++) {
+			if (tween_id[t] == tween) {
+				return t;
+			}
+		}
+		return -1;
+	}
+}
@@ -50,4 +50,45 @@ public class GridConstants {
 	 * Constant to identify bottom left corner
 	 */
 	public static final int BOTTOM_RIGHT_CORNER = 3;
+
+	/**
+	 * Render mode: draw each segment and point every frame
+	 */
+	public static final int RENDER_IMMEDIATE = 0;
+	/**
+	 * Render mode: keep segments and points in a {@link processing.core.PShape}
+	 * and only update moved vertices (P2D/P3D, other renderers use
+	 * {@link #RENDER_BATCHED})
+	 */
+	public static final int RENDER_RETAINED = 1;
+	/**
+	 * Render mode: draw segments grouped by style (color, weight) and points
+	 * grouped by style (color, size, cap), one batch for each style
+	 */
+	public static final int RENDER_BATCHED = 2;
+
+	/**
+	 * Easing: constant speed
+	 */
+	public static final int EASE_LINEAR = 0;
+	/**
+	 * Easing: quadratic, accelerate from zero speed
+	 */
+	public static final int EASE_IN = 1;
+	/**
+	 * Easing: quadratic, decelerate to zero speed
+	 */
+	public static final int EASE_OUT = 2;
+	/**
+	 * Easing: quadratic, accelerate until halfway and then decelerate
+	 */
+	public static final int EASE_IN_OUT = 3;
+	/**
+	 * Easing: cubic, accelerate until halfway and then decelerate
+	 */
+	public static final int EASE_IN_OUT_CUBIC = 4;
+	/**
+	 * Easing: sinusoidal, accelerate until halfway and then decelerate
+	 */
+	public static final int EASE_IN_OUT_SINE = 5;
 }
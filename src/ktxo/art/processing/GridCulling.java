@@ -0,0 +1,254 @@
+package ktxo.art.processing;
+
+import processing.core.*;
+
+/**
+ * Viewport culling for {@link ktxo.art.processing.Grid}, see
+ * {@link Grid#setCulling(boolean)}.
+ *
+ * Bounding boxes of each row and each column (kept up to date by the grid)
+ * are projected to the screen with screenX/screenY, so the current transform
+ * is taken into account, and checked against the clip rectangle. Segments
+ * and points are drawn only when their row/column bands are visible, whole
+ * bands are rejected without checking their points. Boxes of tiles (see
+ * {@link GridTiles}) are checked the same way, so on rotated or distorted
+ * grids blocks outside the clip rectangle are rejected even when their
+ * rows/columns cross it.
+ *
+ * @author ktxo.art@gmail.com
+ *
+ */
+class GridCulling {
+	private final Grid grid;
+	// Clip rectangle in screen coordinates, viewport if not set
+	private boolean clip = false;
+	private float clip_x0;
+	private float clip_y0;
+	private float clip_x1;
+	private float clip_y1;
+	private float margin;
+
+	// Row i / column j visible (horizontal/vertical segments and points)
+	boolean[] row_visible;
+	boolean[] column_visible;
+	// Cells between row i and i+1 / column j and j+1 visible
+	boolean[] row_band_visible;
+	boolean[] column_band_visible;
+	// Boxes of rows and columns: min x, min y, max x, max y
+	private float[] row_box;
+	private float[] column_box;
+	// Tile t inside clip rectangle (cells) and also with some point not hidden
+	// (segments, points). Only checked when tiles is true (current locations)
+	private boolean[] tile_visible;
+	private boolean[] tile_drawn;
+	private boolean tiles = false;
+	private final float[] tile_box = new float[4];
+
+	// =========================================================
+	/**
+	 * Constructor
+	 *
+	 * @param grid   Grid to render
+	 * @param margin Extra pixels around clip rectangle (stroke weight)
+	 */
+	GridCulling(Grid grid, float margin) {
+		this.grid = grid;
+		this.margin = margin;
+		row_visible = new boolean[grid.npointy];
+		row_band_visible = new boolean[grid.npointy];
+		row_box = new float[4 * grid.npointy];
+		column_visible = new boolean[grid.npointx];
+		column_band_visible = new boolean[grid.npointx];
+		column_box = new float[4 * grid.npointx];
+		tile_visible = new boolean[grid.tiles.ntiles];
+		tile_drawn = new boolean[grid.tiles.ntiles];
+	}
+
+	// =========================================================
+	/**
+	 * Set clip rectangle
+	 *
+	 * @param x Left
+	 * @param y Top
+	 * @param w Width
+	 * @param h Height
+	 */
+	void setClip(float x, float y, float w, float h) {
+		clip = true;
+		clip_x0 = x;
+		clip_y0 = y;
+		clip_x1 = x + w;
+		clip_y1 = y + h;
+	}
+
+	/**
+	 * Use sketch viewport as clip rectangle
+	 */
+	void noClip() {
+		clip = false;
+	}
+
+	/**
+	 * Set extra pixels around clip rectangle
+	 *
+	 * @param margin Pixels
+	 */
+	void setMargin(float margin) {
+		this.margin = margin;
+	}
+
+	// =========================================================
+	/**
+	 * Calculate visible rows and columns for current locations and transform
+	 *
+	 * @return false if the whole grid is outside clip rectangle
+	 */
+	boolean check() {
+		if (!clip) {
+			clip_x0 = clip_y0 = 0;
+			clip_x1 = grid.parent.width;
+			clip_y1 = grid.parent.height;
+		}
+		boxes(grid.bounds_rows, row_box, grid.npointx, 1, grid.npointx);
+		boxes(grid.bounds_columns, column_box, 1, grid.npointx, grid.npointy);
+		int nrows = 0;
+		for (int i = 0; i < row_visible.length; i++) {
+			row_visible[i] = visible(row_box, i, i);
+			row_band_visible[i] = i < row_visible.length - 1 && visible(row_box, i, i + 1);
+			nrows += row_visible[i] ? 1 : 0;
+		}
+		int ncolumns = 0;
+		for (int j = 0; j < column_visible.length; j++) {
+			column_visible[j] = visible(column_box, j, j);
+			column_band_visible[j] = j < column_visible.length - 1 && visible(column_box, j, j + 1);
+			ncolumns += column_visible[j] ? 1 : 0;
+		}
+		// Tile boxes are kept for current locations only
+		GridTiles t = grid.tiles;
+		tiles = grid.draw_x == grid.points_x && t.ntiles > 1;
+		if (tiles) {
+			int nvisible = 0;
+			int ndrawn = 0;
+			for (int k = 0; k < t.ntiles; k++) {
+				t.box(k, tile_box);
+				tile_visible[k] = visible(tile_box[0], tile_box[1], tile_box[2], tile_box[3]);
+				tile_drawn[k] = tile_visible[k] && !t.isHidden(k);
+				nvisible += tile_visible[k] ? 1 : 0;
+				ndrawn += tile_drawn[k] ? 1 : 0;
+			}
+			// Cells are filled even when their points are hidden
+			if (nvisible == 0 || (ndrawn == 0 && grid.cell_color == null)) {
+				return false;
+			}
+		}
+		return nrows > 0 && ncolumns > 0;
+	}
+
+	/**
+	 * Boxes of rows/columns: grid boxes for current locations, otherwise
+	 * (simulation frame) scanned from drawn locations
+	 */
+	private void boxes(Bounds[] bounds, float[] box, int step, int stride, int count) {
+		float[] x = grid.draw_x;
+		float[] y = grid.draw_y;
+		boolean current = x == grid.points_x;
+		for (int k = 0, b = 0; k < bounds.length; k++, b += 4) {
+			if (current) {
+				Bounds bk = bounds[k];
+				bk.check(x, y);
+				box[b] = bk.min_x;
+				box[b + 1] = bk.min_y;
+				box[b + 2] = bk.max_x;
+				box[b + 3] = bk.max_y;
+				continue;
+			}
+			float minx = Float.POSITIVE_INFINITY;
+			float miny = Float.POSITIVE_INFINITY;
+			float maxx = Float.NEGATIVE_INFINITY;
+			float maxy = Float.NEGATIVE_INFINITY;
+			for (int n = 0, i = k * step; n < count; n++, i += stride) {
+				minx = Math.min(minx, x[i]);
+				miny = Math.min(miny, y[i]);
+				maxx = Math.max(maxx, x[i]);
+				maxy = Math.max(maxy, y[i]);
+			}
+			box[b] = minx;
+			box[b + 1] = miny;
+			box[b + 2] = maxx;
+			box[b + 3] = maxy;
+		}
+	}
+
+	/**
+	 * Check if union of boxes a and b is (partially) inside clip rectangle
+	 */
+	private boolean visible(float[] box, int a, int b) {
+		a *= 4;
+		b *= 4;
+		float minx = Math.min(box[a], box[b]);
+		float miny = Math.min(box[a + 1], box[b + 1]);
+		float maxx = Math.max(box[a + 2], box[b + 2]);
+		float maxy = Math.max(box[a + 3], box[b + 3]);
+		return visible(minx, miny, maxx, maxy);
+	}
+
+	/**
+	 * Check if box is (partially) inside clip rectangle
+	 */
+	private boolean visible(float minx, float miny, float maxx, float maxy) {
+		// Screen box of the four projected corners
+		PApplet parent = grid.parent;
+		float sx0 = parent.screenX(minx, miny);
+		float sy0 = parent.screenY(minx, miny);
+		float sx1 = parent.screenX(maxx, miny);
+		float sy1 = parent.screenY(maxx, miny);
+		float sx2 = parent.screenX(maxx, maxy);
+		float sy2 = parent.screenY(maxx, maxy);
+		float sx3 = parent.screenX(minx, maxy);
+		float sy3 = parent.screenY(minx, maxy);
+		return Math.max(Math.max(sx0, sx1), Math.max(sx2, sx3)) >= clip_x0 - margin
+				&& Math.min(Math.min(sx0, sx1), Math.min(sx2, sx3)) <= clip_x1 + margin
+				&& Math.max(Math.max(sy0, sy1), Math.max(sy2, sy3)) >= clip_y0 - margin
+				&& Math.min(Math.min(sy0, sy1), Math.min(sy2, sy3)) <= clip_y1 + margin;
+	}
+
+	// =========================================================
+	/**
+	 * Check if horizontal segment (j,i)-(j+1,i) can be visible
+	 */
+	boolean horizontal(int j, int i) {
+		return row_visible[i] && column_band_visible[j] && (!tiles || tile_drawn[grid.tiles.tile(j, i)]);
+	}
+
+	/**
+	 * Check if vertical segment (j,i)-(j,i+1) can be visible
+	 */
+	boolean vertical(int j, int i) {
+		return column_visible[j] && row_band_visible[i] && (!tiles || tile_drawn[grid.tiles.tile(j, i)]);
+	}
+
+	/**
+	 * Check if segment s starting at point p0 (see {@link GridTopology}) can be
+	 * visible
+	 */
+	boolean segment(int s, int p0) {
+		int npointx = grid.npointx;
+		int i = p0 / npointx;
+		int j = p0 - i * npointx;
+		return s < grid.topology.nhorizontal ? horizontal(j, i) : vertical(j, i);
+	}
+
+	/**
+	 * Check if point (j,i) can be visible
+	 */
+	boolean point(int j, int i) {
+		return row_visible[i] && column_visible[j] && (!tiles || tile_drawn[grid.tiles.tile(j, i)]);
+	}
+
+	/**
+	 * Check if cell (j,i)-(j+1,i+1) can be visible
+	 */
+	boolean cell(int j, int i) {
+		return row_band_visible[i] && column_band_visible[j] && (!tiles || tile_visible[grid.tiles.tile(j, i)]);
+	}
+}
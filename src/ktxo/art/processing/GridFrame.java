@@ -0,0 +1,126 @@
+package ktxo.art.processing;
+
+import processing.core.PVector;
+
+/**
+ * Immutable snapshot of {@link ktxo.art.processing.Grid} point locations.
+ * 
+ * Frames returned by {@link Grid#getFrame()} are copies and can be kept and
+ * read from any thread without locking. Frames used internally by the
+ * simulation thread (see {@link Grid#startSimulation(GridUpdater, float)})
+ * are recycled once drawn.
+ * 
+ * @author ktxo.art@gmail.com
+ *
+ */
+public class GridFrame {
+	private final int npointx;
+	private final int npointy;
+	private long number;
+	// Row-major locations, only rewritten in recycled simulation frames
+	final float[] x;
+	final float[] y;
+
+	/**
+	 * Constructor, arrays are not copied and must not be modified later
+	 * 
+	 * @param npointx Number of points along x-axis
+	 * @param npointy Number of points along y-axis
+	 * @param x       X locations
+	 * @param y       Y locations
+	 * @param number  Frame number
+	 */
+	GridFrame(int npointx, int npointy, float[] x, float[] y, long number) {
+		this.npointx = npointx;
+		this.npointy = npointy;
+		this.x = x;
+		this.y = y;
+		this.number = number;
+	}
+
+	/**
+	 * Copy locations into this frame (recycled simulation frames)
+	 * 
+	 * @param x      X locations
+	 * @param y      Y locations
+	 * @param number Frame number
+	 */
+	void set(float[] x, float[] y, long number) {
+		System.arraycopy(x, 0, this.x, 0, this.x.length);
+		System.arraycopy(y, 0, this.y, 0, this.y.length);
+		this.number = number;
+	}
+
+	/**
+	 * Get a copy of this frame
+	 * 
+	 * @return Copy
+	 */
+	GridFrame copy() {
+		return new GridFrame(npointx, npointy, x.clone(), y.clone(), number);
+	}
+
+	/**
+	 * Get frame number (simulation step)
+	 * 
+	 * @return Frame number
+	 */
+	public long getNumber() {
+		return number;
+	}
+
+	/**
+	 * Get number of columns
+	 * 
+	 * @return Number of columns
+	 */
+	public int getNumCols() {
+		return npointx;
+	}
+
+	/**
+	 * Get number of rows
+	 * 
+	 * @return Number of rows
+	 */
+	public int getNumRows() {
+		return npointy;
+	}
+
+	/**
+	 * Get x location of a point
+	 * 
+	 * @param xCoord X-coordinate of point (from 0 to npointx-1)
+	 * @param yCoord Y-coordinate of point (from 0 to npointy-1)
+	 * 
+	 * @return X location
+	 */
+	public float getX(int xCoord, int yCoord) {
+		return x[xCoord + yCoord * npointx];
+	}
+
+	/**
+	 * Get y location of a point
+	 * 
+	 * @param xCoord X-coordinate of point (from 0 to npointx-1)
+	 * @param yCoord Y-coordinate of point (from 0 to npointy-1)
+	 * 
+	 * @return Y location
+	 */
+	public float getY(int xCoord, int yCoord) {
+		return y[xCoord + yCoord * npointx];
+	}
+
+	/**
+	 * Get location of a point
+	 * 
+	 * @param xCoord X-coordinate of point (from 0 to npointx-1)
+	 * @param yCoord Y-coordinate of point (from 0 to npointy-1)
+	 * 
+	 * @return Point location
+	 */
+	public PVector getPosFromCoordinates(int xCoord, int yCoord) {
+		int idx = xCoord + yCoord * npointx;
+		return new PVector(x[idx], y[idx]);
+	}
+}
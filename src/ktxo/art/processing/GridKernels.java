@@ -0,0 +1,202 @@
+package ktxo.art.processing;
+
+/**
+ * Bulk coordinate kernels used by {@link Grid} when vectorized updates are
+ * enabled (see {@link Grid#setVectorized(boolean)}).
+ *
+ * Each kernel is a counted loop over a contiguous range of primitive arrays,
+ * without branches, index calculations or calls, so the JIT compiler can
+ * unroll it and use SIMD instructions (SSE/AVX). Results are the same as the
+ * per point loops of {@link Grid}.
+ *
+ * @author ktxo.art@gmail.com
+ *
+ */
+final class GridKernels {
+
+	private GridKernels() {
+	}
+
+	// =========================================================
+	/**
+	 * Add a value to a range of coordinates, result is also the new rest
+	 * coordinate: a[i] = a0[i] = a[i] + value
+	 *
+	 * @param a     Current coordinates
+	 * @param a0    Rest coordinates
+	 * @param from  First index
+	 * @param to    Last index (excluded)
+	 * @param value Value to add
+	 */
+	static void offset(float[] a, float[] a0, int from, int to, float value) {
+		for (int i = from; i < to; i++) {
+			float v = a[i] + value;
+			a[i] = v;
+			a0[i] = v;
+		}
+	}
+
+	/**
+	 * Translate a range of points, in one pass: current and rest locations
+	 * are moved to current location + (dx, dy) and cached amplitudes are
+	 * discarded
+	 *
+	 * @param x    Current x-coordinates
+	 * @param x0   Rest x-coordinates
+	 * @param y    Current y-coordinates
+	 * @param y0   Rest y-coordinates
+	 * @param amp  Vibration amplitudes
+	 * @param from First index
+	 * @param to   Last index (excluded)
+	 * @param dx   X offset
+	 * @param dy   Y offset
+	 */
+	static void translate(float[] x, float[] x0, float[] y, float[] y0, float[] amp, int from, int to, float dx,
+			float dy) {
+		for (int i = from; i < to; i++) {
+			float vx = x[i] + dx;
+			float vy = y[i] + dy;
+			x[i] = vx;
+			x0[i] = vx;
+			y[i] = vy;
+			y0[i] = vy;
+			amp[i] = Float.NaN;
+		}
+	}
+
+	/**
+	 * Apply an affine transform to a range of points, current and rest
+	 * locations in one pass: x' = a*x + b*y + c, y' = d*x + e*y + f
+	 *
+	 * @param x    Current x-coordinates
+	 * @param y    Current y-coordinates
+	 * @param x0   Rest x-coordinates
+	 * @param y0   Rest y-coordinates
+	 * @param from First index
+	 * @param to   Last index (excluded)
+	 * @param a    x scale
+	 * @param b    x shear
+	 * @param c    x translation
+	 * @param d    y shear
+	 * @param e    y scale
+	 * @param f    y translation
+	 */
+	static void transform(float[] x, float[] y, float[] x0, float[] y0, int from, int to, float a, float b,
+			float c, float d, float e, float f) {
+		for (int i = from; i < to; i++) {
+			float px = x[i];
+			float py = y[i];
+			x[i] = a * px + b * py + c;
+			y[i] = d * px + e * py + f;
+			px = x0[i];
+			py = y0[i];
+			x0[i] = a * px + b * py + c;
+			y0[i] = d * px + e * py + f;
+		}
+	}
+
+	/**
+	 * Add a value to coordinates from, from+stride, ... (n points), result is
+	 * also the new rest coordinate. Strided loops are not vectorized, but skip
+	 * per point index calculations
+	 *
+	 * @param a      Current coordinates
+	 * @param a0     Rest coordinates
+	 * @param from   First index
+	 * @param stride Distance between indexes
+	 * @param n      Number of points
+	 * @param value  Value to add
+	 */
+	static void offset(float[] a, float[] a0, int from, int stride, int n, float value) {
+		for (int k = 0, i = from; k < n; k++, i += stride) {
+			float v = a[i] + value;
+			a[i] = v;
+			a0[i] = v;
+		}
+	}
+
+	/**
+	 * Copy current coordinates of a range as rest coordinates
+	 *
+	 * @param a    Current coordinates
+	 * @param a0   Rest coordinates
+	 * @param from First index
+	 * @param to   Last index (excluded)
+	 */
+	static void rest(float[] a, float[] a0, int from, int to) {
+		System.arraycopy(a, from, a0, from, to - from);
+	}
+
+	/**
+	 * Copy current coordinates as rest coordinates, from, from+stride, ... (n
+	 * points)
+	 *
+	 * @param a      Current coordinates
+	 * @param a0     Rest coordinates
+	 * @param from   First index
+	 * @param stride Distance between indexes
+	 * @param n      Number of points
+	 */
+	static void rest(float[] a, float[] a0, int from, int stride, int n) {
+		for (int k = 0, i = from; k < n; k++, i += stride) {
+			a0[i] = a[i];
+		}
+	}
+
+	/**
+	 * Set values from, from+stride, ... (n values)
+	 *
+	 * @param a      Values
+	 * @param from   First index
+	 * @param stride Distance between indexes
+	 * @param n      Number of values
+	 * @param value  Value
+	 */
+	static void fill(float[] a, int from, int stride, int n, float value) {
+		for (int k = 0, i = from; k < n; k++, i += stride) {
+			a[i] = value;
+		}
+	}
+
+	// =========================================================
+	/**
+	 * Add a value to a range of coordinates: a[i] += value
+	 *
+	 * @param a     Coordinates
+	 * @param from  First index
+	 * @param to    Last index (excluded)
+	 * @param value Value to add
+	 */
+	static void add(float[] a, int from, int to, float value) {
+		for (int i = from; i < to; i++) {
+			a[i] += value;
+		}
+	}
+
+	/**
+	 * Add values to a range of coordinates: a[from+k] += values[k]
+	 *
+	 * @param a      Coordinates
+	 * @param from   First index
+	 * @param values Values to add
+	 * @param n      Number of coordinates
+	 */
+	static void add(float[] a, int from, float[] values, int n) {
+		for (int k = 0; k < n; k++) {
+			a[from + k] += values[k];
+		}
+	}
+
+	/**
+	 * Fill a ramp: values[k] = step*k
+	 *
+	 * @param values Values
+	 * @param n      Number of values
+	 * @param step   Value for each position
+	 */
+	static void ramp(float[] values, int n, float step) {
+		for (int k = 0; k < n; k++) {
+			values[k] = step * k;
+		}
+	}
+}
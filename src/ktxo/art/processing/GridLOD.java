@@ -0,0 +1,206 @@
+package ktxo.art.processing;
+
+import processing.core.*;
+
+/**
+ * Level of detail renderer for {@link ktxo.art.processing.Grid}, see
+ * {@link Grid#setLevelOfDetail(boolean, float)}.
+ *
+ * Cell size on screen is estimated from the corners of the grid (using
+ * screenX/screenY, so the current transform is taken into account). When
+ * cells are smaller than the minimum size only every k-th row and column is
+ * drawn, each one as segments joining every k-th point (split at hidden
+ * points), and points smaller than one pixel are skipped. Contour rows and
+ * columns are always drawn with all their segments.
+ *
+ * @author ktxo.art@gmail.com
+ *
+ */
+class GridLOD {
+	private final Grid grid;
+	// Rows/columns step and points scale (pixels for each unit) of last check
+	private int kx = 1;
+	private int ky = 1;
+	private float scale = 1;
+	// Current stroke, changed only when style changes
+	private int stroke_color;
+	private float stroke_weight;
+
+	// =========================================================
+	/**
+	 * Constructor
+	 *
+	 * @param grid Grid to render
+	 */
+	GridLOD(Grid grid) {
+		this.grid = grid;
+	}
+
+	// =========================================================
+	/**
+	 * Calculate rows/columns step for current transform
+	 *
+	 * @param minCellSize Minimum cell size in pixels
+	 * @return true if grid must be drawn with less detail
+	 */
+	boolean check(float minCellSize) {
+		PApplet parent = grid.parent;
+		float[] x = grid.draw_x;
+		float[] y = grid.draw_y;
+		int c0 = 0;
+		int c1 = grid.npointx - 1;
+		int c2 = grid.npoints - grid.npointx;
+		float sx = parent.screenX(x[c0], y[c0]);
+		float sy = parent.screenY(x[c0], y[c0]);
+		float w = PApplet.dist(sx, sy, parent.screenX(x[c1], y[c1]), parent.screenY(x[c1], y[c1]));
+		float h = PApplet.dist(sx, sy, parent.screenX(x[c2], y[c2]), parent.screenY(x[c2], y[c2]));
+		float cellw = w / Math.max(1, grid.npointx - 1);
+		float cellh = h / Math.max(1, grid.npointy - 1);
+		kx = cellw >= minCellSize ? 1 : (int) Math.min(grid.npointx, Math.ceil(minCellSize / Math.max(cellw, 1e-3F)));
+		ky = cellh >= minCellSize ? 1 : (int) Math.min(grid.npointy, Math.ceil(minCellSize / Math.max(cellh, 1e-3F)));
+		float size = PApplet.dist(x[c0], y[c0], x[c1], y[c1]);
+		scale = size > 0 ? w / size : 1;
+		return kx > 1 || ky > 1;
+	}
+
+	// =========================================================
+	/**
+	 * Draw segments with the steps calculated by {@link #check(float)}
+	 */
+	void drawSegments() {
+		int npointx = grid.npointx;
+		int npointy = grid.npointy;
+		stroke_color = grid.parent.g.strokeColor;
+		stroke_weight = Float.NaN;
+		GridCulling culling = grid.culling;
+		// Rows
+		for (int i = 0; i < npointy; i = next(i, ky, npointy)) {
+			if (culling != null && !culling.row_visible[i]) {
+				continue;
+			}
+			int step = i == 0 || i == npointy - 1 ? 1 : kx;
+			for (int j = 0; j < npointx - 1;) {
+				int id = grid.getSegmentIndex(GridConstants.GRID_AX, j, i);
+				j = drawRun(j, next(j, step, npointx), i * npointx + j, 1, grid.segment_ax_color[id],
+						grid.segment_ax_weight[id]);
+			}
+		}
+		// Columns
+		for (int j = 0; j < npointx; j = next(j, kx, npointx)) {
+			if (culling != null && !culling.column_visible[j]) {
+				continue;
+			}
+			int step = j == 0 || j == npointx - 1 ? 1 : ky;
+			for (int i = 0; i < npointy - 1;) {
+				int id = grid.getSegmentIndex(GridConstants.GRID_AY, j, i);
+				i = drawRun(i, next(i, step, npointy), i * npointx + j, npointx, grid.segment_ay_color[id],
+						grid.segment_ay_weight[id]);
+			}
+		}
+	}
+
+	/**
+	 * Next row/column: next multiple of k (runs split at hidden points get
+	 * back to the same rows/columns), last one is never skipped
+	 */
+	private static int next(int i, int k, int n) {
+		if (i == n - 1) {
+			return n;
+		}
+		return Math.min(i - i % k + k, n - 1);
+	}
+
+	/**
+	 * Draw a segment joining points j and n of a row/column, only up to the
+	 * point before the first hidden one
+	 *
+	 * @param j      First point (position in row/column)
+	 * @param n      Last point (position in row/column)
+	 * @param p0     Index of first point
+	 * @param stride Distance between indexes of consecutive points
+	 * @param color  Stroke color
+	 * @param weight Stroke weight
+	 * @return Position of point where next segment starts
+	 */
+	private int drawRun(int j, int n, int p0, int stride, int color, float weight) {
+		int p1 = p0 + (n - j) * stride;
+		int h = firstHidden(p0, p1, stride);
+		if (h < 0) {
+			drawSegment(p0, p1, color, weight);
+			return n;
+		}
+		int m = j + (h - p0) / stride;
+		if (m > j + 1) {
+			drawSegment(p0, h - stride, color, weight);
+		}
+		// Segments touching hidden point m are not drawn
+		return m + 1;
+	}
+
+	/**
+	 * Get first hidden point of p0, p0+stride, ..., p1
+	 *
+	 * @return Point index or -1 if all points are visible
+	 */
+	private int firstHidden(int p0, int p1, int stride) {
+		PointMask hidden = grid.points_hidden;
+		if (hidden.count() == 0) {
+			return -1;
+		}
+		if (stride == 1) {
+			int h = hidden.nextSet(p0);
+			return h <= p1 ? h : -1;
+		}
+		for (int p = p0; p <= p1; p += stride) {
+			if (hidden.get(p)) {
+				return p;
+			}
+		}
+		return -1;
+	}
+
+	private void drawSegment(int p0, int p1, int color, float weight) {
+		PApplet parent = grid.parent;
+		if (color != stroke_color || weight != stroke_weight) {
+			parent.stroke(color);
+			parent.strokeWeight(weight);
+			stroke_color = color;
+			stroke_weight = weight;
+			if (grid.stats != null) {
+				grid.stats.stroke_changes += 2;
+			}
+		}
+		parent.line(grid.draw_x[p0], grid.draw_y[p0], grid.draw_x[p1], grid.draw_y[p1]);
+		if (grid.stats != null) {
+			grid.stats.line_calls++;
+		}
+	}
+
+	// =========================================================
+	/**
+	 * Draw points of drawn rows/columns, skipping points smaller than one
+	 * pixel
+	 */
+	void drawPoints() {
+		PApplet parent = grid.parent;
+		int npointx = grid.npointx;
+		int npointy = grid.npointy;
+		for (int i = 0; i < npointy; i = next(i, ky, npointy)) {
+			for (int j = 0; j < npointx; j = next(j, kx, npointx)) {
+				int p = i * npointx + j;
+				if (grid.points_hidden.get(p) || grid.points_size[p] * scale < 1
+						|| (grid.culling != null && !grid.culling.point(j, i))) {
+					continue;
+				}
+				parent.stroke(grid.points_color[p]);
+				parent.strokeWeight(grid.points_size[p]);
+				parent.strokeCap(grid.points_cap[p]);
+				parent.point(grid.draw_x[p], grid.draw_y[p]);
+				if (grid.stats != null) {
+					grid.stats.point_calls++;
+					grid.stats.stroke_changes += 3;
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,374 @@
+package ktxo.art.processing;
+
+import java.util.Arrays;
+import processing.core.*;
+
+/**
+ * Retained mode cache for {@link ktxo.art.processing.Grid} (see
+ * {@link GridConstants#RENDER_RETAINED}).
+ *
+ * Segments and points are stored in a group of {@link PShape} built once,
+ * when points move only the changed vertices are rewritten using
+ * {@link PShape#setVertex(int, float, float)} and only the vertices of
+ * changed cells are recolored using {@link PShape#setFill(int, int)}. Style
+ * changes (color, weight, hidden points) rebuild the shape.
+ *
+ * Vertices are indexed by tile (see {@link GridTiles}), only vertices of
+ * tiles changed since last upload are checked, a grid where nothing moved is
+ * not scanned.
+ *
+ * Only used with P2D/P3D renderers, where each vertex keeps its own style and
+ * the whole grid is drawn with one call per frame (other renderers fall back
+ * to {@link GridConstants#RENDER_BATCHED}).
+ *
+ * @author ktxo.art@gmail.com
+ *
+ */
+class GridShape {
+	private final Grid grid;
+
+	private PShape group;
+	private PShape cells;
+	private PShape segments;
+	private PShape[] points;
+	// Point index for each vertex of segments/points shapes
+	private int[] segments_vertex;
+	private int[][] points_vertex;
+	// Last cell colors uploaded to the shape
+	private int[] shape_cell;
+	// Last location uploaded to the shape
+	private float[] shape_x;
+	private float[] shape_y;
+	// Locations array uploaded last (current locations or simulation frame)
+	// and tiles version of the upload
+	private float[] source_x;
+	private long source_version;
+	// Items of each tile (segment number, point shape << 28 | point vertex,
+	// cell number) from tile_*_start[t] to tile_*_start[t+1]
+	private int[] tile_segments_start;
+	private int[] tile_segments;
+	private int[] tile_points_start;
+	private int[] tile_points;
+	private int[] tile_cells_start;
+	private int[] tile_cells;
+	private boolean valid = false;
+
+	// =========================================================
+	/**
+	 * Constructor
+	 *
+	 * @param grid Grid to render
+	 */
+	GridShape(Grid grid) {
+		this.grid = grid;
+	}
+
+	// =========================================================
+	/**
+	 * Force a full rebuild on next draw (style or topology changed)
+	 */
+	void invalidate() {
+		valid = false;
+	}
+
+	// =========================================================
+	/**
+	 * Draw grid, building or updating the shape if needed
+	 */
+	void draw() {
+		if (!valid) {
+			build();
+		} else {
+			update();
+		}
+		grid.parent.shape(group);
+	}
+
+	// =========================================================
+	private void build() {
+		PApplet parent = grid.parent;
+		int npointx = grid.npointx;
+		float[] x = grid.draw_x;
+		float[] y = grid.draw_y;
+		PointMask hidden = grid.points_hidden;
+
+		// Cells, all of them (unfilled ones transparent) so colors can change
+		cells = null;
+		if (grid.cell_color != null) {
+			int[] color = grid.cell_color;
+			cells = parent.createShape();
+			cells.beginShape(PConstants.QUADS);
+			cells.noStroke();
+			for (int c = 0; c < color.length; c++) {
+				int p0 = c + c / (npointx - 1);
+				int p3 = p0 + npointx;
+				cells.fill(color[c]);
+				cells.vertex(x[p0], y[p0]);
+				cells.vertex(x[p0 + 1], y[p0 + 1]);
+				cells.vertex(x[p3 + 1], y[p3 + 1]);
+				cells.vertex(x[p3], y[p3]);
+			}
+			cells.endShape();
+			shape_cell = color.clone();
+		}
+
+		// Segments, same order used by immediate mode
+		int[] topology = grid.topology.segments;
+		int[] vertex = new int[2 * grid.topology.nsegments];
+		int nvertex = 0;
+		segments = parent.createShape();
+		segments.beginShape(PConstants.LINES);
+		segments.noFill();
+		for (int k = 0; k < topology.length; k += 3) {
+			nvertex = addSegment(segments, vertex, nvertex, topology[k], topology[k + 1],
+					grid.getSegmentColor(topology[k + 2]), grid.getSegmentWeight(topology[k + 2]));
+		}
+		segments.endShape();
+		segments_vertex = vertex;
+
+		// Points, one shape for each stroke cap
+		int[] caps = { PConstants.ROUND, PConstants.SQUARE, PConstants.PROJECT };
+		points = new PShape[caps.length];
+		points_vertex = new int[caps.length][];
+		for (int c = 0; c < caps.length; c++) {
+			int n = 0;
+			for (int i = 0; i < grid.npoints; i++) {
+				if (!hidden.get(i) && grid.points_cap[i] == caps[c]) {
+					n++;
+				}
+			}
+			if (n == 0) {
+				continue;
+			}
+			points_vertex[c] = new int[n];
+			points[c] = parent.createShape();
+			points[c].beginShape(PConstants.POINTS);
+			points[c].strokeCap(caps[c]);
+			n = 0;
+			for (int i = 0; i < grid.npoints; i++) {
+				if (!hidden.get(i) && grid.points_cap[i] == caps[c]) {
+					points[c].stroke(grid.points_color[i]);
+					points[c].strokeWeight(grid.points_size[i]);
+					points[c].vertex(x[i], y[i]);
+					points_vertex[c][n++] = i;
+				}
+			}
+			points[c].endShape();
+		}
+
+		group = parent.createShape(PConstants.GROUP);
+		if (cells != null) {
+			group.addChild(cells);
+		}
+		group.addChild(segments);
+		for (PShape p : points) {
+			if (p != null) {
+				group.addChild(p);
+			}
+		}
+		shape_x = x.clone();
+		shape_y = y.clone();
+		source_x = x;
+		source_version = grid.tiles.version();
+		buildTiles();
+		valid = true;
+	}
+
+	/**
+	 * Group vertices by tile of their point (segments/cells by tile of the
+	 * segment/cell)
+	 */
+	private void buildTiles() {
+		GridTiles tiles = grid.tiles;
+		int npointx = grid.npointx;
+		int nvertex = segments.getVertexCount();
+		int[] tile = new int[nvertex / 2];
+		for (int s = 0; s < tile.length; s++) {
+			int p0 = segments_vertex[2 * s];
+			tile[s] = tiles.owner(p0);
+		}
+		tile_segments_start = new int[tiles.ntiles + 1];
+		tile_segments = group(tile, tile_segments_start);
+
+		int n = 0;
+		for (int[] vertex : points_vertex) {
+			n += vertex == null ? 0 : vertex.length;
+		}
+		int[] key = new int[n];
+		tile = new int[n];
+		n = 0;
+		for (int c = 0; c < points_vertex.length; c++) {
+			int[] vertex = points_vertex[c];
+			for (int k = 0; vertex != null && k < vertex.length; k++, n++) {
+				key[n] = c << 28 | k;
+				tile[n] = tiles.owner(vertex[k]);
+			}
+		}
+		tile_points_start = new int[tiles.ntiles + 1];
+		tile_points = group(tile, tile_points_start);
+		for (int k = 0; k < tile_points.length; k++) {
+			tile_points[k] = key[tile_points[k]];
+		}
+
+		tile_cells = null;
+		if (cells != null) {
+			tile = new int[grid.cell_color.length];
+			for (int c = 0; c < tile.length; c++) {
+				tile[c] = tiles.tile(c % (npointx - 1), c / (npointx - 1));
+			}
+			tile_cells_start = new int[tiles.ntiles + 1];
+			tile_cells = group(tile, tile_cells_start);
+		}
+	}
+
+	/**
+	 * Sort item indexes by tile (counting sort)
+	 * 
+	 * @param tile  Tile of each item
+	 * @param start First position of each tile (output, length ntiles+1)
+	 * @return Item indexes
+	 */
+	private static int[] group(int[] tile, int[] start) {
+		for (int t : tile) {
+			start[t + 1]++;
+		}
+		for (int t = 1; t < start.length; t++) {
+			start[t] += start[t - 1];
+		}
+		int[] next = Arrays.copyOf(start, start.length - 1);
+		int[] items = new int[tile.length];
+		for (int k = 0; k < tile.length; k++) {
+			items[next[tile[k]]++] = k;
+		}
+		return items;
+	}
+
+	private int addSegment(PShape shape, int[] vertex, int nvertex, int p0, int p1, int color, float weight) {
+		if (grid.points_hidden.get(p0) || grid.points_hidden.get(p1)) {
+			return nvertex;
+		}
+		shape.stroke(color);
+		shape.strokeWeight(weight);
+		shape.vertex(grid.draw_x[p0], grid.draw_y[p0]);
+		shape.vertex(grid.draw_x[p1], grid.draw_y[p1]);
+		vertex[nvertex++] = p0;
+		vertex[nvertex++] = p1;
+		return nvertex;
+	}
+
+	// =========================================================
+	/**
+	 * Rewrite vertices of points moved and cells recolored since last upload
+	 */
+	private void update() {
+		float[] x = grid.draw_x;
+		float[] y = grid.draw_y;
+		GridTiles tiles = grid.tiles;
+		if (x == grid.points_x && source_x == x) {
+			if (tiles.changedSince(source_version)) {
+				updateTiles(x, y);
+			}
+			return;
+		}
+		source_x = x;
+		source_version = tiles.version();
+		if (cells != null) {
+			updateCells(x, y);
+		}
+		int nvertex = segments.getVertexCount();
+		for (int k = 0; k < nvertex; k++) {
+			int i = segments_vertex[k];
+			if (x[i] != shape_x[i] || y[i] != shape_y[i]) {
+				segments.setVertex(k, x[i], y[i]);
+			}
+		}
+		for (int c = 0; c < points.length; c++) {
+			if (points[c] == null) {
+				continue;
+			}
+			int[] vertex = points_vertex[c];
+			for (int k = 0; k < vertex.length; k++) {
+				int i = vertex[k];
+				if (x[i] != shape_x[i] || y[i] != shape_y[i]) {
+					points[c].setVertex(k, x[i], y[i]);
+				}
+			}
+		}
+		System.arraycopy(x, 0, shape_x, 0, x.length);
+		System.arraycopy(y, 0, shape_y, 0, y.length);
+	}
+
+	/**
+	 * Rewrite vertices of tiles changed since last upload
+	 */
+	private void updateTiles(float[] x, float[] y) {
+		GridTiles tiles = grid.tiles;
+		for (int t = 0; t < tiles.ntiles; t++) {
+			if (!tiles.changedSince(t, source_version)) {
+				continue;
+			}
+			if (tile_cells != null) {
+				for (int k = tile_cells_start[t]; k < tile_cells_start[t + 1]; k++) {
+					updateCell(tile_cells[k], x, y);
+				}
+			}
+			for (int k = tile_segments_start[t]; k < tile_segments_start[t + 1]; k++) {
+				int v = 2 * tile_segments[k];
+				updateVertex(segments, v, segments_vertex[v], x, y);
+				updateVertex(segments, v + 1, segments_vertex[v + 1], x, y);
+			}
+			for (int k = tile_points_start[t]; k < tile_points_start[t + 1]; k++) {
+				int c = tile_points[k] >>> 28;
+				int v = tile_points[k] & 0xFFFFFFF;
+				updateVertex(points[c], v, points_vertex[c][v], x, y);
+			}
+		}
+		// Uploaded locations, after all tiles (shared points)
+		int npointx = grid.npointx;
+		for (int t = 0; t < tiles.ntiles; t++) {
+			if (!tiles.changedSince(t, source_version)) {
+				continue;
+			}
+			int tx = t % tiles.ntilex;
+			int ty = t / tiles.ntilex;
+			int j0 = tiles.column0(tx);
+			int n = tiles.column1(tx) - j0 + 1;
+			for (int i = tiles.row0(ty), i1 = tiles.row1(ty); i <= i1; i++) {
+				System.arraycopy(x, i * npointx + j0, shape_x, i * npointx + j0, n);
+				System.arraycopy(y, i * npointx + j0, shape_y, i * npointx + j0, n);
+			}
+		}
+		source_version = tiles.version();
+	}
+
+	private void updateVertex(PShape shape, int k, int i, float[] x, float[] y) {
+		if (x[i] != shape_x[i] || y[i] != shape_y[i]) {
+			shape.setVertex(k, x[i], y[i]);
+		}
+	}
+
+	private void updateCells(float[] x, float[] y) {
+		for (int c = 0; c < grid.cell_color.length; c++) {
+			updateCell(c, x, y);
+		}
+	}
+
+	private void updateCell(int c, float[] x, float[] y) {
+		int color = grid.cell_color[c];
+		int npointx = grid.npointx;
+		int k = 4 * c;
+		int p0 = c + c / (npointx - 1);
+		int p3 = p0 + npointx;
+		if (color != shape_cell[c]) {
+			cells.setFill(k, color);
+			cells.setFill(k + 1, color);
+			cells.setFill(k + 2, color);
+			cells.setFill(k + 3, color);
+			shape_cell[c] = color;
+		}
+		updateVertex(cells, k, p0, x, y);
+		updateVertex(cells, k + 1, p0 + 1, x, y);
+		updateVertex(cells, k + 2, p3 + 1, x, y);
+		updateVertex(cells, k + 3, p3, x, y);
+	}
+}
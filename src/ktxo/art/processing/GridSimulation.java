@@ -0,0 +1,168 @@
+package ktxo.art.processing;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Background simulation thread for {@link ktxo.art.processing.Grid}, see
+ * {@link Grid#startSimulation(GridUpdater, float)}.
+ * 
+ * Each step updates the grid arrays, copies them into a back frame and
+ * publishes it with an atomic swap, renderer and readers always get the
+ * latest complete frame. Frames are recycled (triple buffering): the back
+ * frame is written by the simulation thread, the ready frame is the latest
+ * one published and not taken yet (written again if the renderer did not
+ * take it) and the front frame is the one being drawn. Drawn frames go back
+ * to the simulation thread through the spare slot once the renderer moved
+ * to a newer one, so steps do not allocate. A new frame is only built when
+ * the renderer gives its frame back at the same time a step is published.
+ * 
+ * @author ktxo.art@gmail.com
+ *
+ */
+class GridSimulation implements Runnable {
+	private final Grid grid;
+	private final GridUpdater updater;
+	private final long period;
+	private final AtomicReference<GridFrame> ready = new AtomicReference<GridFrame>();
+	private final AtomicReference<GridFrame> spare = new AtomicReference<GridFrame>();
+	// Simulation thread only
+	private GridFrame back;
+	// Guarded by this: latest taken frame and frame being drawn (or null)
+	private GridFrame front;
+	private GridFrame drawing;
+	// Update statistics of the simulation thread, and values not collected
+	// yet by the renderer (guarded by itself)
+	private final GridStats step_stats = new GridStats();
+	private final GridStats pending_stats = new GridStats();
+	private volatile boolean running = false;
+	private Thread thread;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param grid    Grid to update
+	 * @param updater Called on each step (can be null)
+	 * @param rate    Steps per second (greater than 0, checked by
+	 *                {@link Grid#startSimulation(GridUpdater, float)})
+	 */
+	GridSimulation(Grid grid, GridUpdater updater, float rate) {
+		this.grid = grid;
+		this.updater = updater;
+		this.period = (long) (1e9 / rate);
+	}
+
+	/**
+	 * Publish current state and start thread
+	 */
+	void start() {
+		front = grid.snapshot(0);
+		back = grid.snapshot(0);
+		spare.set(grid.snapshot(0));
+		running = true;
+		thread = new Thread(this, "Grid simulation");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Stop thread and wait until current step ends
+	 */
+	void stop() {
+		running = false;
+		if (thread != null && thread != Thread.currentThread()) {
+			try {
+				thread.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * Take latest published frame
+	 * 
+	 * @param draw Frame will be drawn, it is not recycled until
+	 *             {@link #release()}
+	 * @return Latest frame
+	 */
+	synchronized GridFrame acquire(boolean draw) {
+		GridFrame f = ready.getAndSet(null);
+		if (f != null) {
+			if (front != drawing) {
+				spare.set(front);
+			}
+			front = f;
+		}
+		if (draw) {
+			drawing = front;
+		}
+		return front;
+	}
+
+	/**
+	 * End drawing of frame taken with {@link #acquire(boolean)}
+	 */
+	synchronized void release() {
+		if (drawing != null && drawing != front) {
+			spare.set(drawing);
+		}
+		drawing = null;
+	}
+
+	/**
+	 * Get a copy of latest published frame
+	 * 
+	 * @return Copy of latest frame
+	 */
+	synchronized GridFrame getFrame() {
+		// Copied while holding the lock, frame can not be recycled meanwhile
+		return acquire(false).copy();
+	}
+
+	/**
+	 * Add update statistics of steps since last call
+	 * 
+	 * @param stats Statistics of the grid (sketch thread)
+	 */
+	void collectStats(GridStats stats) {
+		synchronized (pending_stats) {
+			stats.addUpdate(pending_stats);
+			pending_stats.reset();
+		}
+	}
+
+	public void run() {
+		long number = 0;
+		long next = System.nanoTime();
+		while (running) {
+			if (updater != null) {
+				updater.update(grid);
+			}
+			// Statistics enabled check only, values go to step_stats
+			boolean stats = grid.getStats() != null;
+			grid.update(stats ? step_stats : null);
+			if (stats) {
+				synchronized (pending_stats) {
+					pending_stats.addUpdate(step_stats);
+				}
+				step_stats.reset();
+			}
+			back.set(grid.points_x, grid.points_y, ++number);
+			GridFrame old = ready.getAndSet(back);
+			// Frame not taken by the renderer is written again
+			back = old != null ? old : spare.getAndSet(null);
+			if (back == null) {
+				back = grid.snapshot(0);
+			}
+
+			next += period;
+			long wait = next - System.nanoTime();
+			if (wait > 0) {
+				LockSupport.parkNanos(wait);
+			} else {
+				next = System.nanoTime();
+			}
+		}
+	}
+}
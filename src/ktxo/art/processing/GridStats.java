@@ -0,0 +1,170 @@
+package ktxo.art.processing;
+
+/**
+ * Render statistics of a {@link ktxo.art.processing.Grid}, see
+ * {@link Grid#enableStats(boolean)}.
+ * 
+ * Values are added up since the last {@link #reset()}: call reset() after
+ * reading them to get values for each frame.
+ * 
+ * @author ktxo.art@gmail.com
+ *
+ */
+public class GridStats {
+	long frames = 0;
+	long update_nanos = 0;
+	long segments_nanos = 0;
+	long points_nanos = 0;
+	long fill_nanos = 0;
+	long line_calls = 0;
+	long point_calls = 0;
+	long fill_calls = 0;
+	long stroke_changes = 0;
+	long points_vibrated = 0;
+	long culled = 0;
+	long allocations_avoided = 0;
+
+	/**
+	 * Reset all values
+	 */
+	public void reset() {
+		frames = 0;
+		update_nanos = segments_nanos = points_nanos = fill_nanos = 0;
+		line_calls = point_calls = fill_calls = stroke_changes = 0;
+		points_vibrated = culled = allocations_avoided = 0;
+	}
+
+	/**
+	 * Add update values (time, vibrated points, allocations avoided) of other
+	 * statistics, used to collect values of the simulation thread
+	 * 
+	 * @param other Statistics
+	 */
+	void addUpdate(GridStats other) {
+		update_nanos += other.update_nanos;
+		points_vibrated += other.points_vibrated;
+		allocations_avoided += other.allocations_avoided;
+	}
+
+	/**
+	 * Get number of rendered frames
+	 * 
+	 * @return Number of frames
+	 */
+	public long getFrames() {
+		return frames;
+	}
+
+	/**
+	 * Get time spent updating the grid (vibration)
+	 * 
+	 * @return Nanoseconds
+	 */
+	public long getUpdateNanos() {
+		return update_nanos;
+	}
+
+	/**
+	 * Get time spent drawing segments (whole grid in retained mode)
+	 * 
+	 * @return Nanoseconds
+	 */
+	public long getSegmentsNanos() {
+		return segments_nanos;
+	}
+
+	/**
+	 * Get time spent drawing points
+	 * 
+	 * @return Nanoseconds
+	 */
+	public long getPointsNanos() {
+		return points_nanos;
+	}
+
+	/**
+	 * Get time spent filling blocks, rows, columns, the whole grid or the cell
+	 * color layer
+	 * 
+	 * @return Nanoseconds
+	 */
+	public long getFillNanos() {
+		return fill_nanos;
+	}
+
+	/**
+	 * Get number of line draw calls: line() calls and batches of lines
+	 * 
+	 * @return Number of calls
+	 */
+	public long getLineCalls() {
+		return line_calls;
+	}
+
+	/**
+	 * Get number of point draw calls: point() calls and batches of points
+	 * 
+	 * @return Number of calls
+	 */
+	public long getPointCalls() {
+		return point_calls;
+	}
+
+	/**
+	 * Get number of cell fill batches (one for each cell color)
+	 * 
+	 * @return Number of batches
+	 */
+	public long getFillCalls() {
+		return fill_calls;
+	}
+
+	/**
+	 * Get number of stroke state changes (stroke, strokeWeight, strokeCap)
+	 * 
+	 * @return Number of changes
+	 */
+	public long getStrokeChanges() {
+		return stroke_changes;
+	}
+
+	/**
+	 * Get number of vibrated points
+	 * 
+	 * @return Number of points
+	 */
+	public long getPointsVibrated() {
+		return points_vibrated;
+	}
+
+	/**
+	 * Get number of segments and points not drawn because they are outside the
+	 * viewport, see {@link Grid#setCulling(boolean)}
+	 * 
+	 * @return Number of segments and points
+	 */
+	public long getCulled() {
+		return culled;
+	}
+
+	/**
+	 * Get number of objects (PVector) not allocated compared with the point
+	 * object implementation (vibration and grid size updates)
+	 * 
+	 * @return Number of objects
+	 */
+	public long getAllocationsAvoided() {
+		return allocations_avoided;
+	}
+
+	/**
+	 * Show statistics
+	 */
+	@Override
+	public String toString() {
+		return String.format(
+				"frames=%d update=%.3fms segments=%.3fms points=%.3fms fill=%.3fms lines=%d points=%d fills=%d strokes=%d vibrated=%d culled=%d avoided=%d",
+				frames, update_nanos / 1e6, segments_nanos / 1e6, points_nanos / 1e6, fill_nanos / 1e6, line_calls,
+				point_calls, fill_calls, stroke_changes, points_vibrated, culled, allocations_avoided);
+	}
+}
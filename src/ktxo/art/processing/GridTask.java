@@ -0,0 +1,58 @@
+package ktxo.art.processing;
+
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Fork-join task used by {@link ktxo.art.processing.Grid} parallel updates
+ * (see {@link Grid#setParallel(boolean, int)}). A range (rows or columns) is
+ * split in halves until it is smaller than grain, each piece is processed by
+ * a {@link Band}.
+ * 
+ * @author ktxo.art@gmail.com
+ *
+ */
+@SuppressWarnings("serial")
+class GridTask extends RecursiveAction {
+	/**
+	 * Operation applied to a range of rows or columns
+	 */
+	interface Band {
+		/**
+		 * Process a range
+		 * 
+		 * @param from First row/column (inclusive)
+		 * @param to   Last row/column (exclusive)
+		 */
+		void apply(int from, int to);
+	}
+
+	private final Band band;
+	private final int from;
+	private final int to;
+	private final int grain;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param band  Operation
+	 * @param from  First row/column (inclusive)
+	 * @param to    Last row/column (exclusive)
+	 * @param grain Max rows/columns processed without splitting
+	 */
+	GridTask(Band band, int from, int to, int grain) {
+		this.band = band;
+		this.from = from;
+		this.to = to;
+		this.grain = grain;
+	}
+
+	@Override
+	protected void compute() {
+		if (to - from <= grain) {
+			band.apply(from, to);
+			return;
+		}
+		int middle = (from + to) >>> 1;
+		invokeAll(new GridTask(band, from, middle, grain), new GridTask(band, middle, to, grain));
+	}
+}
@@ -0,0 +1,315 @@
+package ktxo.art.processing;
+
+import java.util.Arrays;
+
+/**
+ * Tile index of a {@link ktxo.art.processing.Grid}: the grid is split in
+ * blocks of {@link #SIZE}x{@link #SIZE} points, neighbour tiles share their
+ * edge points, so every segment and every cell belongs to one tile.
+ *
+ * Points are still stored in the grid arrays, tiles only keep for each block
+ * a bounding box (calculated again only after a point of the tile moves), a
+ * version (stamp of the last change of its points) and a summary of hidden
+ * points. Culling rejects whole tiles, retained mode and the direct buffer
+ * (see {@link Grid#setDirectBuffer(boolean)}) only copy tiles changed since
+ * their last sync, see {@link #changedSince(int, long)}.
+ *
+ * Each point is owned by one tile (shared edges go to the tile on the right /
+ * below), see {@link #owner(int)}.
+ *
+ * Segment styles (color, weight) are not summarized by tile: batched and
+ * retained renderers group segments by style for the whole grid (stroke is
+ * set once for each style, see {@link SegmentBatches}) and only rebuild
+ * after a style change, so a tile summary would have no reader. Only hidden
+ * points are counted, they are needed to skip whole tiles.
+ *
+ * @author ktxo.art@gmail.com
+ *
+ */
+class GridTiles {
+	/**
+	 * Points for each tile side
+	 */
+	static final int SIZE = 64;
+	// Cells for each tile side
+	private static final int CELLS = SIZE - 1;
+
+	private final Grid grid;
+	final int ntilex;
+	final int ntiley;
+	final int ntiles;
+	// Boxes of tiles: min x, min y, max x, max y
+	private final float[] box;
+	private final boolean[] box_valid;
+	// Stamp of last change of each tile and of the whole grid
+	private final long[] version;
+	private long modcount = 1;
+	// Number of hidden points of each tile, calculated when style changes
+	private final int[] hidden;
+	private boolean hidden_valid = false;
+
+	// =========================================================
+	/**
+	 * Constructor
+	 *
+	 * @param grid Grid
+	 */
+	GridTiles(Grid grid) {
+		this.grid = grid;
+		ntilex = Math.max(1, (grid.npointx - 2) / CELLS + 1);
+		ntiley = Math.max(1, (grid.npointy - 2) / CELLS + 1);
+		ntiles = ntilex * ntiley;
+		box = new float[4 * ntiles];
+		box_valid = new boolean[ntiles];
+		version = new long[ntiles];
+		Arrays.fill(version, modcount);
+		hidden = new int[ntiles];
+	}
+
+	// =========================================================
+	/**
+	 * Get tile column (row) of a segment or cell starting at column (row) j
+	 *
+	 * @param j Column/row number
+	 * @param n Number of tile columns/rows
+	 * @return Tile column/row
+	 */
+	private static int tileOf(int j, int n) {
+		return Math.min(j / CELLS, n - 1);
+	}
+
+	/**
+	 * Get tile owning a point, same tile used for cell/segment starting at the
+	 * point
+	 *
+	 * @param j Column
+	 * @param i Row
+	 * @return Tile index
+	 */
+	int tile(int j, int i) {
+		return tileOf(i, ntiley) * ntilex + tileOf(j, ntilex);
+	}
+
+	/**
+	 * Get tile owning a point
+	 *
+	 * @param idx Point index
+	 * @return Tile index
+	 */
+	int owner(int idx) {
+		return tile(idx % grid.npointx, idx / grid.npointx);
+	}
+
+	/**
+	 * Get first column of a tile
+	 *
+	 * @param tx Tile column
+	 * @return Column number
+	 */
+	int column0(int tx) {
+		return tx * CELLS;
+	}
+
+	/**
+	 * Get last column of a tile (included, shared with next tile)
+	 *
+	 * @param tx Tile column
+	 * @return Column number
+	 */
+	int column1(int tx) {
+		return tx == ntilex - 1 ? grid.npointx - 1 : (tx + 1) * CELLS;
+	}
+
+	/**
+	 * Get first row of a tile
+	 *
+	 * @param ty Tile row
+	 * @return Row number
+	 */
+	int row0(int ty) {
+		return ty * CELLS;
+	}
+
+	/**
+	 * Get last row of a tile (included, shared with next tile)
+	 *
+	 * @param ty Tile row
+	 * @return Row number
+	 */
+	int row1(int ty) {
+		return ty == ntiley - 1 ? grid.npointy - 1 : (ty + 1) * CELLS;
+	}
+
+	// =========================================================
+	/**
+	 * Mark tiles of a point after moving it: box must be calculated again and
+	 * tiles get a new version
+	 *
+	 * @param idx Point index
+	 */
+	void moved(int idx) {
+		int j = idx % grid.npointx;
+		int i = idx / grid.npointx;
+		int tx = tileOf(j, ntilex);
+		int ty = tileOf(i, ntiley);
+		// Shared edges also belong to previous tile
+		int px = j > 0 && j == column0(tx) ? tx - 1 : tx;
+		int py = i > 0 && i == row0(ty) ? ty - 1 : ty;
+		modcount++;
+		for (int y = py; y <= ty; y++) {
+			for (int x = px; x <= tx; x++) {
+				int t = y * ntilex + x;
+				box_valid[t] = false;
+				version[t] = modcount;
+			}
+		}
+	}
+
+	/**
+	 * Mark all tiles after moving many points
+	 */
+	void invalidate() {
+		Arrays.fill(box_valid, false);
+		touch();
+	}
+
+	/**
+	 * Mark all tiles as changed, boxes are kept (e.g.: cell colors changed)
+	 */
+	void touch() {
+		Arrays.fill(version, ++modcount);
+	}
+
+	/**
+	 * Mark all tiles after moving all points by the same offset, boxes are
+	 * kept
+	 *
+	 * @param dx X offset
+	 * @param dy Y offset
+	 */
+	void translate(float dx, float dy) {
+		for (int t = 0, b = 0; t < ntiles; t++, b += 4) {
+			box[b] += dx;
+			box[b + 1] += dy;
+			box[b + 2] += dx;
+			box[b + 3] += dy;
+		}
+		touch();
+	}
+
+	/**
+	 * Discard hidden points summary (hidden points changed)
+	 */
+	void styleChanged() {
+		hidden_valid = false;
+	}
+
+	// =========================================================
+	/**
+	 * Get current version, consumers keep it after a sync and check
+	 * {@link #changedSince(int, long)} on next one
+	 *
+	 * @return Version
+	 */
+	long version() {
+		return modcount;
+	}
+
+	/**
+	 * Check if any point moved after a version
+	 *
+	 * @param v Version (see {@link #version()})
+	 * @return true if changed
+	 */
+	boolean changedSince(long v) {
+		return modcount > v;
+	}
+
+	/**
+	 * Check if points of a tile moved after a version
+	 *
+	 * @param t Tile index
+	 * @param v Version (see {@link #version()})
+	 * @return true if changed
+	 */
+	boolean changedSince(int t, long v) {
+		return version[t] > v;
+	}
+
+	// =========================================================
+	/**
+	 * Get bounding box of a tile for current locations, scanned if a point
+	 * moved
+	 *
+	 * @param t   Tile index
+	 * @param out min x, min y, max x, max y
+	 */
+	void box(int t, float[] out) {
+		int b = 4 * t;
+		if (!box_valid[t]) {
+			float[] x = grid.points_x;
+			float[] y = grid.points_y;
+			int npointx = grid.npointx;
+			int tx = t % ntilex;
+			int ty = t / ntilex;
+			int j0 = column0(tx);
+			int j1 = column1(tx);
+			float minx = Float.POSITIVE_INFINITY;
+			float miny = Float.POSITIVE_INFINITY;
+			float maxx = Float.NEGATIVE_INFINITY;
+			float maxy = Float.NEGATIVE_INFINITY;
+			for (int i = row0(ty), i1 = row1(ty); i <= i1; i++) {
+				for (int p = i * npointx + j0, end = i * npointx + j1; p <= end; p++) {
+					minx = Math.min(minx, x[p]);
+					miny = Math.min(miny, y[p]);
+					maxx = Math.max(maxx, x[p]);
+					maxy = Math.max(maxy, y[p]);
+				}
+			}
+			box[b] = minx;
+			box[b + 1] = miny;
+			box[b + 2] = maxx;
+			box[b + 3] = maxy;
+			box_valid[t] = true;
+		}
+		out[0] = box[b];
+		out[1] = box[b + 1];
+		out[2] = box[b + 2];
+		out[3] = box[b + 3];
+	}
+
+	/**
+	 * Check if all points of a tile are hidden
+	 *
+	 * @param t Tile index
+	 * @return true if nothing of the tile is drawn
+	 */
+	boolean isHidden(int t) {
+		if (!hidden_valid) {
+			countHidden();
+		}
+		int tx = t % ntilex;
+		int ty = t / ntilex;
+		return hidden[t] == (column1(tx) - column0(tx) + 1) * (row1(ty) - row0(ty) + 1);
+	}
+
+	private void countHidden() {
+		Arrays.fill(hidden, 0);
+		PointMask mask = grid.points_hidden;
+		int npointx = grid.npointx;
+		for (int p = mask.nextSet(0); p < grid.npoints; p = mask.nextSet(p + 1)) {
+			int j = p % npointx;
+			int i = p / npointx;
+			int tx = tileOf(j, ntilex);
+			int ty = tileOf(i, ntiley);
+			int px = j > 0 && j == column0(tx) ? tx - 1 : tx;
+			int py = i > 0 && i == row0(ty) ? ty - 1 : ty;
+			for (int y = py; y <= ty; y++) {
+				for (int x = px; x <= tx; x++) {
+					hidden[y * ntilex + x]++;
+				}
+			}
+		}
+		hidden_valid = true;
+	}
+}
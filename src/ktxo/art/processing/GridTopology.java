@@ -0,0 +1,75 @@
+package ktxo.art.processing;
+
+/**
+ * Segments of a {@link ktxo.art.processing.Grid}, calculated once for each
+ * grid size and shared by all renderers.
+ *
+ * Each segment is stored as three ints: first point index, second point index
+ * and style index. Horizontal segments come first, row by row, then vertical
+ * segments, column by column, so each row/column is a range of segments.
+ * Style index selects color/weight: horizontal segment id (see
+ * {@link Grid#getSegmentIndex(int, int, int)}) or number of horizontal
+ * segments + vertical segment id.
+ *
+ * @author ktxo.art@gmail.com
+ *
+ */
+class GridTopology {
+	final int npointx;
+	final int npointy;
+	// first point, second point, style index
+	final int[] segments;
+	final int nsegments;
+	final int nhorizontal;
+
+	// =========================================================
+	/**
+	 * Constructor
+	 *
+	 * @param npointx Number of columns
+	 * @param npointy Number of rows
+	 */
+	GridTopology(int npointx, int npointy) {
+		this.npointx = npointx;
+		this.npointy = npointy;
+		nhorizontal = (npointx - 1) * npointy;
+		nsegments = nhorizontal + npointx * (npointy - 1);
+		segments = new int[3 * nsegments];
+		int k = 0;
+		for (int i = 0; i < npointy; i++) {
+			for (int j = 0; j < npointx - 1; j++) {
+				segments[k++] = i * npointx + j;
+				segments[k++] = i * npointx + j + 1;
+				segments[k++] = i * (npointx - 1) + j;
+			}
+		}
+		for (int j = 0; j < npointx; j++) {
+			for (int i = 0; i < npointy - 1; i++) {
+				segments[k++] = i * npointx + j;
+				segments[k++] = (i + 1) * npointx + j;
+				segments[k++] = nhorizontal + j * (npointy - 1) + i;
+			}
+		}
+	}
+
+	// =========================================================
+	/**
+	 * Get first segment of a row
+	 *
+	 * @param row Row number (from 0 to npointy-1)
+	 * @return Segment index, row has npointx-1 segments
+	 */
+	int rowStart(int row) {
+		return row * (npointx - 1);
+	}
+
+	/**
+	 * Get first segment of a column
+	 *
+	 * @param col Column number (from 0 to npointx-1)
+	 * @return Segment index, column has npointy-1 segments
+	 */
+	int columnStart(int col) {
+		return nhorizontal + col * (npointy - 1);
+	}
+}
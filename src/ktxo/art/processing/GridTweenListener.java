@@ -0,0 +1,19 @@
+package ktxo.art.processing;
+
+/**
+ * Called when a tween scheduled in {@link GridAnimator} reaches its target,
+ * see {@link GridAnimator#onComplete(int, GridTweenListener)}
+ * 
+ * @author ktxo.art@gmail.com
+ *
+ */
+public interface GridTweenListener {
+	/**
+	 * Tween completed, points are at their target locations. New tweens can be
+	 * scheduled from here.
+	 * 
+	 * @param grid  Animated grid
+	 * @param tween Tween id
+	 */
+	void tweenCompleted(Grid grid, int tween);
+}
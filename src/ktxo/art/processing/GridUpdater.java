@@ -0,0 +1,18 @@
+package ktxo.art.processing;
+
+/**
+ * Grid update called on each step of the simulation thread, see
+ * {@link Grid#startSimulation(GridUpdater, float)}
+ * 
+ * @author ktxo.art@gmail.com
+ *
+ */
+public interface GridUpdater {
+	/**
+	 * Update grid (move points, change vibration, start tweens, ...). Called
+	 * from the simulation thread.
+	 * 
+	 * @param grid Grid to update
+	 */
+	void update(Grid grid);
+}
@@ -0,0 +1,42 @@
+package ktxo.art.processing;
+
+/**
+ * Source of noise and random values used by {@link ktxo.art.processing.Grid}
+ * vibration (see {@link Grid#setNoiseSource(NoiseSource)}).
+ * 
+ * Random values are requested with a key (frame, point and axis), so a
+ * source can return the same values for the same key no matter which
+ * thread or in which order they are requested.
+ * 
+ * @author ktxo.art@gmail.com
+ *
+ */
+public interface NoiseSource {
+	/**
+	 * Get noise value at a location
+	 * 
+	 * @param x X-coordinate
+	 * @param y Y-coordinate
+	 * 
+	 * @return Noise value (from 0 to 1)
+	 */
+	float noise(float x, float y);
+
+	/**
+	 * Get a random value
+	 * 
+	 * @param key Value key, see {@link NoiseSource}
+	 * 
+	 * @return Random value (from -1 to 1)
+	 */
+	float random(long key);
+
+	/**
+	 * Get an instance to be used from another thread. The new instance must
+	 * return the same values as this one for the same inputs.
+	 * 
+	 * @return New instance or null if this source can only be used from the
+	 *         sketch thread
+	 */
+	NoiseSource copy();
+}
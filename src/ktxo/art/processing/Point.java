@@ -7,6 +7,9 @@ import processing.core.*;
 /**
  * Simple Point to build {@link ktxo.art.processing.Grid} 
  * 
+ * Grid does not keep Point objects, points are copied into grid storage
+ * when the grid is built and created again by {@link Grid#getPoint(int, int)}
+ * 
  * @author ktxo.art@gmail.com
  *
  */
@@ -134,16 +137,11 @@ public class Point {
 	 * Draw the point 
 	 */
 	public void draw() {
-		float s = point_size;
-		int c = point_color;
-
 		if (!hidden) {
 			parent.stroke(point_color);
 			parent.strokeWeight(point_size);
 			parent.strokeCap(point_cap);
 			parent.point(center.x, center.y);
-			parent.stroke(c);
-			parent.strokeWeight(s);
 		}
 	}
 
@@ -172,19 +170,18 @@ public class Point {
 		// point_size= random(0.5, 1);
 
 		float n = parent.noise(centerori.x * vibration, centerori.y * vibration);
-		center = centerori.copy();
+		// Update center in place, no objects allocated
+		center.set(centerori);
 		switch (direction) {
 		case GridConstants.VIBRATE_X:
-			center.add(new PVector(sigNum(parent.random(-1, 1)) * n, 0));
+			center.x += sigNum(parent.random(-1, 1)) * n;
 			break;
 		case GridConstants.VIBRATE_Y:
-			center.add(new PVector(0, sigNum(parent.random(-1, 1)) * n));
-			break;
-		case GridConstants.VIBRATE_ALL:
-			center.add(new PVector(sigNum(parent.random(-1, 1)) * n, sigNum(parent.random(-1, 1)) * n));
+			center.y += sigNum(parent.random(-1, 1)) * n;
 			break;
 		default:
-			center.add(new PVector(sigNum(parent.random(-1, 1)) * n, sigNum(parent.random(-1, 1)) * n));
+			center.x += sigNum(parent.random(-1, 1)) * n;
+			center.y += sigNum(parent.random(-1, 1)) * n;
 			break;
 		}
 	}
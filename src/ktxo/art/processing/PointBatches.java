@@ -0,0 +1,145 @@
+package ktxo.art.processing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import processing.core.*;
+
+/**
+ * Point renderer grouping points by style (see
+ * {@link GridConstants#RENDER_BATCHED}).
+ *
+ * Points sharing (color, size, cap) are drawn together: stroke state is set
+ * once for each style and the points are drawn in one beginShape(POINTS)
+ * batch. When all visible points share one style (the usual case after
+ * {@link Grid#setPointColor(int)}, ...) state is set once for the whole grid.
+ * Groups are built again after any style change.
+ *
+ * @author ktxo.art@gmail.com
+ *
+ */
+class PointBatches {
+	private final Grid grid;
+	private Group[] groups;
+	// All points visible and sharing one style
+	private boolean uniform = false;
+	private boolean valid = false;
+
+	/**
+	 * Points with the same style
+	 */
+	private static class Group {
+		final int color;
+		final float size;
+		final int cap;
+		int[] points = new int[16];
+		int npoints = 0;
+		// Group with same color and size but other cap
+		Group next;
+
+		Group(int color, float size, int cap) {
+			this.color = color;
+			this.size = size;
+			this.cap = cap;
+		}
+
+		void add(int p) {
+			if (npoints == points.length) {
+				points = Arrays.copyOf(points, points.length * 2);
+			}
+			points[npoints++] = p;
+		}
+	}
+
+	// =========================================================
+	/**
+	 * Constructor
+	 *
+	 * @param grid Grid to render
+	 */
+	PointBatches(Grid grid) {
+		this.grid = grid;
+	}
+
+	// =========================================================
+	/**
+	 * Force groups to be built again on next draw (style or hidden points
+	 * changed)
+	 */
+	void invalidate() {
+		valid = false;
+	}
+
+	// =========================================================
+	private void build() {
+		int n = grid.npoints;
+		int color = grid.points_color[0];
+		float size = grid.points_size[0];
+		int cap = grid.points_cap[0];
+		uniform = grid.points_hidden.isEmpty();
+		for (int i = 1; i < n && uniform; i++) {
+			uniform = grid.points_color[i] == color && grid.points_size[i] == size && grid.points_cap[i] == cap;
+		}
+		if (uniform) {
+			groups = new Group[] { new Group(color, size, cap) };
+			valid = true;
+			return;
+		}
+		HashMap<Long, Group> map = new HashMap<Long, Group>();
+		ArrayList<Group> list = new ArrayList<Group>();
+		for (int i = grid.points_hidden.nextClear(0); i < n; i = grid.points_hidden.nextClear(i + 1)) {
+			color = grid.points_color[i];
+			size = grid.points_size[i];
+			cap = grid.points_cap[i];
+			Long key = ((long) color << 32) | (Float.floatToIntBits(size) & 0xFFFFFFFFL);
+			Group first = map.get(key);
+			Group g = first;
+			while (g != null && g.cap != cap) {
+				g = g.next;
+			}
+			if (g == null) {
+				g = new Group(color, size, cap);
+				g.next = first;
+				map.put(key, g);
+				list.add(g);
+			}
+			g.add(i);
+		}
+		groups = list.toArray(new Group[list.size()]);
+		valid = true;
+	}
+
+	// =========================================================
+	/**
+	 * Draw all visible points
+	 */
+	void draw() {
+		if (!valid) {
+			build();
+		}
+		PApplet parent = grid.parent;
+		float[] x = grid.draw_x;
+		float[] y = grid.draw_y;
+		GridCulling culling = grid.culling;
+		int npointx = grid.npointx;
+		for (Group g : groups) {
+			parent.stroke(g.color);
+			parent.strokeWeight(g.size);
+			parent.strokeCap(g.cap);
+			if (grid.stats != null) {
+				grid.stats.stroke_changes += 3;
+				grid.stats.point_calls++;
+			}
+			parent.beginShape(PConstants.POINTS);
+			int n = uniform ? grid.npoints : g.npoints;
+			for (int k = 0; k < n; k++) {
+				int p = uniform ? k : g.points[k];
+				if (culling != null && !culling.point(p % npointx, p / npointx)) {
+					continue;
+				}
+				parent.vertex(x[p], y[p]);
+			}
+			parent.endShape();
+		}
+	}
+}
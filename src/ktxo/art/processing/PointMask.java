@@ -0,0 +1,263 @@
+package ktxo.art.processing;
+
+import java.util.Arrays;
+
+/**
+ * One bit for each grid point (locked, hidden), packed in 64 bit words.
+ *
+ * Rows and rectangles are set a word at a time, loops over points can jump
+ * over runs of set (or clear) bits with {@link #nextSet(int)} and
+ * {@link #nextClear(int)}.
+ *
+ * Optionally the mask keeps a compact list of points with bit clear (e.g.:
+ * unlocked points), updated for each changed bit, so sparse sets can be
+ * walked without scanning the mask.
+ *
+ * @author ktxo.art@gmail.com
+ *
+ */
+class PointMask {
+	private final long[] words;
+	private final int size;
+	// Number of set bits
+	private int count = 0;
+	// Points with bit clear (unordered) and position of each point in the list
+	private int[] clear_list;
+	private int[] clear_slot;
+
+	/**
+	 * Constructor, all bits clear
+	 *
+	 * @param size Number of points
+	 */
+	PointMask(int size) {
+		this(size, false);
+	}
+
+	/**
+	 * Constructor, all bits clear
+	 *
+	 * @param size      Number of points
+	 * @param listClear Keep list of points with bit clear, see
+	 *                  {@link #clearList()}
+	 */
+	PointMask(int size, boolean listClear) {
+		this.size = size;
+		this.words = new long[(size + 63) >>> 6];
+		if (listClear) {
+			clear_list = new int[size];
+			clear_slot = new int[size];
+			resetList();
+		}
+	}
+
+	private PointMask(PointMask mask) {
+		this.size = mask.size;
+		this.words = mask.words.clone();
+		this.count = mask.count;
+		if (mask.clear_list != null) {
+			this.clear_list = mask.clear_list.clone();
+			this.clear_slot = mask.clear_slot.clone();
+		}
+	}
+
+	private void resetList() {
+		for (int i = 0; i < size; i++) {
+			clear_list[i] = clear_slot[i] = i;
+		}
+	}
+
+	/**
+	 * Get a copy of this mask
+	 *
+	 * @return Copy
+	 */
+	PointMask copy() {
+		return new PointMask(this);
+	}
+
+	// =========================================================
+	/**
+	 * Get bit of one point
+	 *
+	 * @param i Point index
+	 * @return true if set
+	 */
+	boolean get(int i) {
+		return (words[i >>> 6] & (1L << i)) != 0;
+	}
+
+	/**
+	 * Set/clear bit of one point
+	 *
+	 * @param i     Point index
+	 * @param value Set or clear
+	 */
+	void set(int i, boolean value) {
+		long w = words[i >>> 6];
+		long bit = 1L << i;
+		if (value && (w & bit) == 0) {
+			words[i >>> 6] = w | bit;
+			changed(i, true);
+		} else if (!value && (w & bit) != 0) {
+			words[i >>> 6] = w & ~bit;
+			changed(i, false);
+		}
+	}
+
+	/**
+	 * Update count and list after changing one bit
+	 */
+	private void changed(int i, boolean value) {
+		if (clear_list == null) {
+			count += value ? 1 : -1;
+			return;
+		}
+		int nclear = size - count;
+		if (value) {
+			// Remove from list: move last one to its slot
+			int last = clear_list[nclear - 1];
+			int slot = clear_slot[i];
+			clear_list[slot] = last;
+			clear_slot[last] = slot;
+			count++;
+		} else {
+			clear_list[nclear] = i;
+			clear_slot[i] = nclear;
+			count--;
+		}
+	}
+
+	/**
+	 * Set/clear bits of points from..to-1, a word at a time
+	 *
+	 * @param from  First point index
+	 * @param to    Last point index (excluded)
+	 * @param value Set or clear
+	 */
+	void set(int from, int to, boolean value) {
+		if (from >= to) {
+			return;
+		}
+		int first = from >>> 6;
+		int last = (to - 1) >>> 6;
+		long firstMask = -1L << from;
+		long lastMask = -1L >>> -to;
+		for (int k = first; k <= last; k++) {
+			long m = -1L;
+			if (k == first) {
+				m &= firstMask;
+			}
+			if (k == last) {
+				m &= lastMask;
+			}
+			long w = words[k];
+			long n = value ? w | m : w & ~m;
+			words[k] = n;
+			if (clear_list == null) {
+				count += Long.bitCount(n) - Long.bitCount(w);
+				continue;
+			}
+			for (long diff = w ^ n; diff != 0; diff &= diff - 1) {
+				changed((k << 6) + Long.numberOfTrailingZeros(diff), value);
+			}
+		}
+	}
+
+	/**
+	 * Set/clear bits of points from, from+stride, ... (count points)
+	 *
+	 * @param from   First point index
+	 * @param stride Distance between point indexes
+	 * @param n      Number of points
+	 * @param value  Set or clear
+	 */
+	void set(int from, int stride, int n, boolean value) {
+		for (int i = 0, idx = from; i < n; i++, idx += stride) {
+			set(idx, value);
+		}
+	}
+
+	/**
+	 * Clear all bits
+	 */
+	void clear() {
+		Arrays.fill(words, 0);
+		count = 0;
+		if (clear_list != null) {
+			resetList();
+		}
+	}
+
+	// =========================================================
+	/**
+	 * Get number of set bits
+	 *
+	 * @return Number of points
+	 */
+	int count() {
+		return count;
+	}
+
+	/**
+	 * Check if no bit is set
+	 *
+	 * @return true if empty
+	 */
+	boolean isEmpty() {
+		return count == 0;
+	}
+
+	/**
+	 * Get list of points with bit clear, only first size-{@link #count()}
+	 * entries are valid (order is not kept). Null if the mask was not created
+	 * with a list.
+	 *
+	 * @return Point indexes
+	 */
+	int[] clearList() {
+		return clear_list;
+	}
+
+	/**
+	 * Find next point with bit set
+	 *
+	 * @param from First point index to check
+	 * @return Point index, or number of points if there are no more
+	 */
+	int nextSet(int from) {
+		if (from >= size) {
+			return size;
+		}
+		int k = from >>> 6;
+		long w = words[k] & (-1L << from);
+		while (w == 0) {
+			if (++k == words.length) {
+				return size;
+			}
+			w = words[k];
+		}
+		return Math.min(size, (k << 6) + Long.numberOfTrailingZeros(w));
+	}
+
+	/**
+	 * Find next point with bit clear
+	 *
+	 * @param from First point index to check
+	 * @return Point index, or number of points if there are no more
+	 */
+	int nextClear(int from) {
+		if (from >= size) {
+			return size;
+		}
+		int k = from >>> 6;
+		long w = ~words[k] & (-1L << from);
+		while (w == 0) {
+			if (++k == words.length) {
+				return size;
+			}
+			w = ~words[k];
+		}
+		return Math.min(size, (k << 6) + Long.numberOfTrailingZeros(w));
+	}
+}
@@ -0,0 +1,113 @@
+package ktxo.art.processing;
+
+/**
+ * Seedable {@link NoiseSource}: value noise (octaves added like
+ * {@link processing.core.PApplet#noise(float, float)}) and a counter based
+ * random generator (SplitMix64 mixing of seed and key).
+ * 
+ * Values only depend on seed and inputs, there is no mutable state: renders
+ * are reproducible for a seed and instances can be used from any thread.
+ * 
+ * @author ktxo.art@gmail.com
+ *
+ */
+public class SeededNoise implements NoiseSource {
+	private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+	private static final long Y_GAMMA = 0xC2B2AE3D27D4EB4FL;
+	private static final float UNIT = 1F / (1 << 24);
+
+	private final long seed;
+	private final int octaves;
+	private final float falloff;
+
+	// =========================================================
+	/**
+	 * Constructor, 4 octaves and 0.5 falloff (same as Processing defaults)
+	 * 
+	 * @param seed Seed
+	 */
+	public SeededNoise(long seed) {
+		this(seed, 4, 0.5F);
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param seed    Seed
+	 * @param octaves Number of octaves, see
+	 *                {@link processing.core.PApplet#noiseDetail(int, float)}
+	 * @param falloff Octave falloff factor
+	 */
+	public SeededNoise(long seed, int octaves, float falloff) {
+		this.seed = seed;
+		this.octaves = octaves;
+		this.falloff = falloff;
+	}
+
+	// =========================================================
+	/**
+	 * Get seed
+	 * 
+	 * @return Seed
+	 */
+	public long getSeed() {
+		return seed;
+	}
+
+	// =========================================================
+	private static long mix64(long z) {
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	private float lattice(int x, int y) {
+		return (mix64(seed + x * GOLDEN_GAMMA + y * Y_GAMMA) >>> 40) * UNIT;
+	}
+
+	private float valueNoise(float x, float y) {
+		int xi = (int) x;
+		int yi = (int) y;
+		if (x < xi) {
+			xi--;
+		}
+		if (y < yi) {
+			yi--;
+		}
+		float fx = x - xi;
+		float fy = y - yi;
+		float sx = fx * fx * (3 - 2 * fx);
+		float sy = fy * fy * (3 - 2 * fy);
+		float v00 = lattice(xi, yi);
+		float v10 = lattice(xi + 1, yi);
+		float v01 = lattice(xi, yi + 1);
+		float v11 = lattice(xi + 1, yi + 1);
+		float v0 = v00 + sx * (v10 - v00);
+		float v1 = v01 + sx * (v11 - v01);
+		return v0 + sy * (v1 - v0);
+	}
+
+	// =========================================================
+	public float noise(float x, float y) {
+		float r = 0;
+		float ampl = 0.5F;
+		for (int i = 0; i < octaves; i++) {
+			r += ampl * valueNoise(x, y);
+			ampl *= falloff;
+			x *= 2;
+			y *= 2;
+		}
+		return r;
+	}
+
+	public float random(long key) {
+		return (mix64(seed + (key + 1) * GOLDEN_GAMMA) >>> 40) * UNIT * 2 - 1;
+	}
+
+	/**
+	 * Get an instance for another thread (same seed and settings)
+	 */
+	public NoiseSource copy() {
+		return new SeededNoise(seed, octaves, falloff);
+	}
+}
@@ -0,0 +1,207 @@
+package ktxo.art.processing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import processing.core.*;
+
+/**
+ * Segment renderer grouping segments by style (see
+ * {@link GridConstants#RENDER_BATCHED}).
+ *
+ * Segments sharing (color, weight) are drawn together: stroke state is set
+ * once for each style, loose segments are drawn in one
+ * beginShape(LINES) batch and rows/columns sharing one style are drawn as a
+ * continuous polyline. Buckets are built again after any style change.
+ *
+ * @author ktxo.art@gmail.com
+ *
+ */
+class SegmentBatches {
+	private final Grid grid;
+	private Bucket[] buckets;
+	private boolean valid = false;
+
+	/**
+	 * Segments with the same style
+	 */
+	private static class Bucket {
+		final int color;
+		final float weight;
+		// Point index pairs
+		int[] lines = new int[16];
+		int nlines = 0;
+		// Polylines: start point index, stride, number of points
+		int[] strips = new int[12];
+		int nstrips = 0;
+
+		Bucket(int color, float weight) {
+			this.color = color;
+			this.weight = weight;
+		}
+
+		void addLine(int p0, int p1) {
+			if (nlines + 2 > lines.length) {
+				lines = Arrays.copyOf(lines, lines.length * 2);
+			}
+			lines[nlines++] = p0;
+			lines[nlines++] = p1;
+		}
+
+		void addStrip(int start, int stride, int count) {
+			if (nstrips + 3 > strips.length) {
+				strips = Arrays.copyOf(strips, strips.length * 2);
+			}
+			strips[nstrips++] = start;
+			strips[nstrips++] = stride;
+			strips[nstrips++] = count;
+		}
+	}
+
+	// =========================================================
+	/**
+	 * Constructor
+	 *
+	 * @param grid Grid to render
+	 */
+	SegmentBatches(Grid grid) {
+		this.grid = grid;
+	}
+
+	// =========================================================
+	/**
+	 * Force buckets to be built again on next draw (style or topology changed)
+	 */
+	void invalidate() {
+		valid = false;
+	}
+
+	// =========================================================
+	private void build() {
+		GridTopology topology = grid.topology;
+		HashMap<Long, Bucket> map = new HashMap<Long, Bucket>();
+		ArrayList<Bucket> list = new ArrayList<Bucket>();
+
+		// Horizontal segments, row by row
+		for (int i = 0; i < grid.npointy; i++) {
+			int from = topology.rowStart(i);
+			addRange(map, list, from, from + grid.npointx - 1, i * grid.npointx, 1, grid.npointx);
+		}
+		// Vertical segments, column by column
+		for (int j = 0; j < grid.npointx; j++) {
+			int from = topology.columnStart(j);
+			addRange(map, list, from, from + grid.npointy - 1, j, grid.npointx, grid.npointy);
+		}
+		buckets = list.toArray(new Bucket[list.size()]);
+		valid = true;
+	}
+
+	/**
+	 * Add segments from..to-1 of one row/column: one polyline if all of them
+	 * share the same style, otherwise loose lines
+	 */
+	private void addRange(HashMap<Long, Bucket> map, ArrayList<Bucket> list, int from, int to, int start,
+			int stride, int count) {
+		if (from >= to) {
+			return;
+		}
+		int[] segments = grid.topology.segments;
+		int color = grid.getSegmentColor(segments[3 * from + 2]);
+		float weight = grid.getSegmentWeight(segments[3 * from + 2]);
+		boolean strip = true;
+		for (int s = from + 1; s < to && strip; s++) {
+			strip = grid.getSegmentColor(segments[3 * s + 2]) == color
+					&& grid.getSegmentWeight(segments[3 * s + 2]) == weight;
+		}
+		if (strip) {
+			addStrips(bucket(map, list, color, weight), start, stride, count);
+			return;
+		}
+		for (int s = from; s < to; s++) {
+			int style = segments[3 * s + 2];
+			Bucket b = bucket(map, list, grid.getSegmentColor(style), grid.getSegmentWeight(style));
+			addLine(b, segments[3 * s], segments[3 * s + 1]);
+		}
+	}
+
+	private static Bucket bucket(HashMap<Long, Bucket> map, ArrayList<Bucket> list, int color, float weight) {
+		Long key = ((long) color << 32) | (Float.floatToIntBits(weight) & 0xFFFFFFFFL);
+		Bucket b = map.get(key);
+		if (b == null) {
+			b = new Bucket(color, weight);
+			map.put(key, b);
+			list.add(b);
+		}
+		return b;
+	}
+
+	private void addLine(Bucket b, int p0, int p1) {
+		if (!grid.points_hidden.get(p0) && !grid.points_hidden.get(p1)) {
+			b.addLine(p0, p1);
+		}
+	}
+
+	/**
+	 * Add a row/column as polylines, hidden points split the polyline
+	 */
+	private void addStrips(Bucket b, int start, int stride, int count) {
+		int runStart = -1;
+		for (int k = 0; k <= count; k++) {
+			boolean visible = k < count && !grid.points_hidden.get(start + k * stride);
+			if (visible && runStart < 0) {
+				runStart = k;
+			} else if (!visible && runStart >= 0) {
+				if (k - runStart > 1) {
+					b.addStrip(start + runStart * stride, stride, k - runStart);
+				}
+				runStart = -1;
+			}
+		}
+	}
+
+	// =========================================================
+	/**
+	 * Draw all segments
+	 */
+	void draw() {
+		if (!valid) {
+			build();
+		}
+		PApplet parent = grid.parent;
+		float[] x = grid.draw_x;
+		float[] y = grid.draw_y;
+		boolean fill = parent.g.fill;
+		int fillColor = parent.g.fillColor;
+
+		parent.noFill();
+		for (Bucket b : buckets) {
+			parent.stroke(b.color);
+			parent.strokeWeight(b.weight);
+			if (grid.stats != null) {
+				grid.stats.stroke_changes += 2;
+				grid.stats.line_calls += (b.nlines > 0 ? 1 : 0) + b.nstrips / 3;
+			}
+			if (b.nlines > 0) {
+				parent.beginShape(PConstants.LINES);
+				for (int k = 0; k < b.nlines; k++) {
+					int i = b.lines[k];
+					parent.vertex(x[i], y[i]);
+				}
+				parent.endShape();
+			}
+			for (int s = 0; s < b.nstrips; s += 3) {
+				int i = b.strips[s];
+				int stride = b.strips[s + 1];
+				int end = i + b.strips[s + 2] * stride;
+				parent.beginShape();
+				for (; i < end; i += stride) {
+					parent.vertex(x[i], y[i]);
+				}
+				parent.endShape();
+			}
+		}
+		if (fill) {
+			parent.fill(fillColor);
+		}
+	}
+}
@@ -0,0 +1,39 @@
+package ktxo.art.processing;
+
+import processing.core.PApplet;
+
+/**
+ * Default {@link NoiseSource}, using sketch {@link PApplet#noise(float, float)}
+ * and {@link PApplet#random(float, float)}. Sketch noise and random state is
+ * shared, so this source can only be used from the sketch thread.
+ * 
+ * @author ktxo.art@gmail.com
+ *
+ */
+class SketchNoise implements NoiseSource {
+	private final PApplet parent;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param parent Parent sketch
+	 */
+	SketchNoise(PApplet parent) {
+		this.parent = parent;
+	}
+
+	public float noise(float x, float y) {
+		return parent.noise(x, y);
+	}
+
+	/**
+	 * Key is ignored, value comes from sketch random generator
+	 */
+	public float random(long key) {
+		return parent.random(-1, 1);
+	}
+
+	public NoiseSource copy() {
+		return null;
+	}
+}